@@ -31,7 +31,9 @@ public class Constants {
     public static class IntentManager{
 
         /**
-         * Intent Action for downloaded images
+         * Intent Action for downloaded images.
+         * It is sent only if {@link com.android.cards.internal.CardThumbnail#setSendBroadcastAfterAttach(boolean)}
+         * is enabled.
          */
         public static final String INTENT_ACTION_IMAGE_DOWNLOADED = "com.android.cards.intent.action.IMAGE_DOWNLOADED";
 
@@ -20,6 +20,7 @@ package com.android.cards.internal;
 
 import android.content.Context;
 import android.graphics.drawable.Drawable;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
@@ -183,6 +184,52 @@ public class Card extends BaseCard {
      */
     public static final int CLICK_LISTENER_ACTIONAREA1_VIEW = 9;
 
+    /**
+     * Changed piece: the shadow and the elevation
+     */
+    public static final int CHANGE_SHADOW = 1;
+
+    /**
+     * Changed piece: the {@link CardHeader}
+     */
+    public static final int CHANGE_HEADER = 1 << 1;
+
+    /**
+     * Changed piece: the inner view of the main content
+     */
+    public static final int CHANGE_CONTENT = 1 << 2;
+
+    /**
+     * Changed piece: the {@link CardThumbnail}
+     */
+    public static final int CHANGE_THUMBNAIL = 1 << 3;
+
+    /**
+     * Changed piece: the inner view of the {@link CardExpand}
+     */
+    public static final int CHANGE_EXPAND = 1 << 4;
+
+    /**
+     * Changed piece: the click, long click and swipe listeners
+     */
+    public static final int CHANGE_LISTENERS = 1 << 5;
+
+    /**
+     * Changed piece: the expand/collapse action and the expanded state
+     */
+    public static final int CHANGE_EXPAND_ACTION = 1 << 6;
+
+    /**
+     * Changed piece: the background
+     */
+    public static final int CHANGE_BACKGROUND = 1 << 7;
+
+    /**
+     * All the pieces of the card
+     */
+    public static final int CHANGE_ALL = CHANGE_SHADOW | CHANGE_HEADER | CHANGE_CONTENT | CHANGE_THUMBNAIL
+            | CHANGE_EXPAND | CHANGE_LISTENERS | CHANGE_EXPAND_ACTION | CHANGE_BACKGROUND;
+
     /**
      * Listener invoked when the user undo a swipe action in a List
      */
@@ -235,6 +282,11 @@ public class Card extends BaseCard {
      */
     protected Float mCardElevation;
 
+    /**
+     * Refreshes only the pieces changed since the last bind, see {@link #setPartialRefreshEnabled(boolean)}
+     */
+    protected boolean mPartialRefreshEnabled = false;
+
 
     private boolean couldUseNativeInnerLayout = false;
 
@@ -323,7 +375,7 @@ public class Card extends BaseCard {
         //Add simple title to header
         if (view != null) {
             TextView mTitleView = (TextView) view.findViewById(R.id.card_main_inner_simple_title);
-            if (mTitleView != null)
+            if (mTitleView != null && !TextUtils.equals(mTitleView.getText(), mTitle))
                 mTitleView.setText(mTitle);
         }
     }
@@ -351,6 +403,7 @@ public class Card extends BaseCard {
         mCardThumbnail = cardThumbnail;
         if (mCardThumbnail != null)
             mCardThumbnail.setParentCard(this);
+        markChanged(CHANGE_THUMBNAIL);
     }
 
     /**
@@ -376,6 +429,7 @@ public class Card extends BaseCard {
         mCardHeader = cardHeader;
         if (mCardHeader != null)
             mCardHeader.setParentCard(this);
+        markChanged(CHANGE_HEADER | CHANGE_EXPAND_ACTION);
     }
 
     /**
@@ -400,6 +454,7 @@ public class Card extends BaseCard {
         mCardExpand = cardExpand;
         if (mCardExpand != null)
             mCardExpand.setParentCard(this);
+        markChanged(CHANGE_EXPAND | CHANGE_EXPAND_ACTION);
     }
 
     /**
@@ -558,6 +613,7 @@ public class Card extends BaseCard {
         else
             mIsClickable = false;
         mOnClickListener = onClickListener;
+        markChanged(CHANGE_LISTENERS);
     }
 
     // -------------------------------------------------------------
@@ -597,6 +653,7 @@ public class Card extends BaseCard {
         else
             mIsLongClickable = false;
         mOnLongClickListener = onLongClickListener;
+        markChanged(CHANGE_LISTENERS);
     }
 
     // -------------------------------------------------------------
@@ -778,6 +835,7 @@ public class Card extends BaseCard {
      */
     public void setCardElevation(float elevation) {
         this.mCardElevation = elevation;
+        markChanged(CHANGE_SHADOW);
     }
 
     /**
@@ -805,6 +863,7 @@ public class Card extends BaseCard {
      */
     public void setShadow(boolean shadow) {
         mShadow = shadow;
+        markChanged(CHANGE_SHADOW);
     }
 
 
@@ -839,6 +898,7 @@ public class Card extends BaseCard {
      */
     public void setClickable(boolean isClickable) {
         mIsClickable = isClickable;
+        markChanged(CHANGE_LISTENERS);
     }
 
     /**
@@ -857,6 +917,7 @@ public class Card extends BaseCard {
      */
     public void setSwipeable(boolean isSwipeable) {
         mIsSwipeable = isSwipeable;
+        markChanged(CHANGE_LISTENERS);
     }
 
     /**
@@ -885,6 +946,7 @@ public class Card extends BaseCard {
      */
     public void setLongClickable(boolean isLongClickable) {
         mIsLongClickable = isLongClickable;
+        markChanged(CHANGE_LISTENERS);
     }
 
     /**
@@ -908,6 +970,7 @@ public class Card extends BaseCard {
         if (onClickListener != null) {
             multipleOnClickListener.put(area, onClickListener);
             mIsClickable = true;
+            markChanged(CHANGE_LISTENERS);
         } else {
             removePartialOnClickListener(area);
         }
@@ -932,6 +995,7 @@ public class Card extends BaseCard {
 
         if (mOnClickListener == null && multipleOnClickListener.isEmpty())
             mIsClickable = false;
+        markChanged(CHANGE_LISTENERS);
     }
 
     /**
@@ -968,6 +1032,7 @@ public class Card extends BaseCard {
         if (onLongClickListener != null) {
             multipleOnLongClickListener.put(area, onLongClickListener);
             mIsLongClickable = true;
+            markChanged(CHANGE_LISTENERS);
         } else {
             removePartialOnLongClickListener(area);
         }
@@ -993,6 +1058,7 @@ public class Card extends BaseCard {
         if (mOnLongClickListener == null && multipleOnLongClickListener.isEmpty()) {
             mIsLongClickable = false;
         }
+        markChanged(CHANGE_LISTENERS);
     }
 
     /**
@@ -1023,6 +1089,7 @@ public class Card extends BaseCard {
      */
     public void setExpanded(boolean expanded) {
         mIsExpanded = expanded;
+        markChanged(CHANGE_EXPAND_ACTION);
     }
 
 
@@ -1080,12 +1147,70 @@ public class Card extends BaseCard {
     }
 
     /**
-     * Refreshes the card content (it doesn't inflate layouts again)
+     * Refreshes the card content (it doesn't inflate layouts again).
+     * </p>
+     * If {@link #isPartialRefreshEnabled()} only the pieces changed since the last bind are refreshed,
+     * see {@link #markChanged(int)}. Otherwise, or if no change is recorded, the whole card is refreshed.
      */
     public void notifyDataSetChanged(){
         getCardView().refreshCard(this);
     }
 
+    /**
+     * Returns <code>true</code> if {@link #notifyDataSetChanged()} refreshes only the changed pieces
+     *
+     * @return <code>true</code> if the partial refresh is enabled
+     */
+    public boolean isPartialRefreshEnabled() {
+        return mPartialRefreshEnabled;
+    }
+
+    /**
+     * Enables the partial refresh: {@link #notifyDataSetChanged()} refreshes only the pieces
+     * recorded by {@link #markChanged(int)}. It is disabled by default.
+     * </p>
+     * Enable it only if every value read by the card view is recorded: the setters of the card and of
+     * its components record their changes, but the values of your own model must be recorded
+     * with {@link #markChanged(int)}. The swipe, undo and expand/collapse callbacks are read when they
+     * are invoked and don't need a refresh.
+     *
+     * @param partialRefreshEnabled <code>true</code> to refresh only the changed pieces
+     */
+    public void setPartialRefreshEnabled(boolean partialRefreshEnabled) {
+        mPartialRefreshEnabled = partialRefreshEnabled;
+    }
+
+    /**
+     * Returns the pieces changed since the last bind, of the card and of its components
+     *
+     * @return changes, 0 if nothing was recorded
+     */
+    @Override
+    public int getChanges() {
+        int changes = super.getChanges();
+        if (mCardHeader != null)
+            changes |= mCardHeader.getChanges();
+        if (mCardThumbnail != null)
+            changes |= mCardThumbnail.getChanges();
+        if (mCardExpand != null)
+            changes |= mCardExpand.getChanges();
+        return changes;
+    }
+
+    /**
+     * Forgets the changes of the card and of its components
+     */
+    @Override
+    public void clearChanges() {
+        super.clearChanges();
+        if (mCardHeader != null)
+            mCardHeader.clearChanges();
+        if (mCardThumbnail != null)
+            mCardThumbnail.clearChanges();
+        if (mCardExpand != null)
+            mCardExpand.clearChanges();
+    }
+
     /**
      * Sets the background drawable resource to override the style of MainLayout (card.main_layout)
      *
@@ -1093,6 +1218,7 @@ public class Card extends BaseCard {
      */
     public void setBackgroundResourceId(int drawableResourceId) {
         this.mBackgroundResourceId = drawableResourceId;
+        markChanged(CHANGE_BACKGROUND);
     }
 
     /**
@@ -1120,6 +1246,7 @@ public class Card extends BaseCard {
      */
     public void setBackgroundResource(Drawable drawableResource) {
         this.mBackgroundResource = drawableResource;
+        markChanged(CHANGE_BACKGROUND);
     }
 
     /**
@@ -1160,6 +1287,7 @@ public class Card extends BaseCard {
      */
     public void setCheckable(boolean checkable) {
         mCheckable = checkable;
+        markChanged(CHANGE_LISTENERS);
     }
 
     /**
@@ -1186,6 +1314,7 @@ public class Card extends BaseCard {
      */
     public void setViewToClickToExpand(ViewToClickToExpand viewToClickToExpand) {
         this.viewToClickToExpand = viewToClickToExpand;
+        markChanged(CHANGE_EXPAND_ACTION | CHANGE_LISTENERS);
     }
 
     /**
@@ -1204,6 +1333,7 @@ public class Card extends BaseCard {
      */
     public void setBackgroundColorResourceId(int backgroundColorResourceId) {
         mBackgroundColorResourceId = backgroundColorResourceId;
+        markChanged(CHANGE_BACKGROUND);
     }
 
     /**
@@ -169,6 +169,11 @@ public class CardExpand extends BaseCard {
 
     }
 
+    @Override
+    protected int getTitleChange() {
+        return Card.CHANGE_EXPAND;
+    }
+
     /**
      * Returns true if the card is using the native card
      * @return
@@ -19,6 +19,7 @@
 package com.android.cards.internal;
 
 import android.content.Context;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
@@ -259,6 +260,7 @@ public class CardHeader extends BaseCard {
         }else{
             mIsButtonOverflowVisible=true;
         }
+        markChanged(Card.CHANGE_HEADER);
     }
 
     /**
@@ -306,6 +308,7 @@ public class CardHeader extends BaseCard {
         }else{
             mIsButtonOverflowVisible=true;
         }
+        markChanged(Card.CHANGE_HEADER);
     }
 
 
@@ -378,12 +381,17 @@ public class CardHeader extends BaseCard {
         //Add simple title to header
         if (view!=null){
             TextView mTitleView=(TextView) view.findViewById(R.id.card_header_inner_simple_title);
-            if (mTitleView!=null)
+            if (mTitleView!=null && !TextUtils.equals(mTitleView.getText(), mTitle))
                 mTitleView.setText(mTitle);
         }
 
     }
 
+    @Override
+    protected int getTitleChange() {
+        return Card.CHANGE_HEADER;
+    }
+
     // -------------------------------------------------------------
     //  Getters and Setters
     // -------------------------------------------------------------
@@ -413,6 +421,7 @@ public class CardHeader extends BaseCard {
      */
     public void setPopupMenuListener(OnClickCardHeaderPopupMenuListener popupMenuListener) {
         mPopupMenuListener = popupMenuListener;
+        markChanged(Card.CHANGE_HEADER);
     }
 
     /**
@@ -422,6 +431,7 @@ public class CardHeader extends BaseCard {
      */
     public void setPopupMenuPrepareListener(OnPrepareCardHeaderPopupMenuListener popupMenuListener) {
         mPopupMenuPrepareListener = popupMenuListener;
+        markChanged(Card.CHANGE_HEADER);
     }
 
     /**
@@ -440,6 +450,7 @@ public class CardHeader extends BaseCard {
      */
     public void setButtonExpandVisible(boolean buttonExpandVisible) {
         mIsButtonExpandVisible = buttonExpandVisible;
+        markChanged(Card.CHANGE_HEADER | Card.CHANGE_EXPAND_ACTION);
     }
 
     /**
@@ -459,6 +470,7 @@ public class CardHeader extends BaseCard {
      */
     public void setButtonOverflowVisible(boolean buttonOverflowVisible) {
         mIsButtonOverflowVisible = buttonOverflowVisible;
+        markChanged(Card.CHANGE_HEADER);
     }
 
     /**
@@ -492,6 +504,7 @@ public class CardHeader extends BaseCard {
      */
     public void setOtherButtonVisible(boolean isOtherButtonVisible) {
         mIsOtherButtonVisible = isOtherButtonVisible;
+        markChanged(Card.CHANGE_HEADER);
     }
 
     /**
@@ -510,6 +523,7 @@ public class CardHeader extends BaseCard {
      */
     public void setOtherButtonClickListener(OnClickCardHeaderOtherButtonListener otherButtonClickListener) {
         mOtherButtonClickListener = otherButtonClickListener;
+        markChanged(Card.CHANGE_HEADER);
     }
 
     /**
@@ -534,6 +548,7 @@ public class CardHeader extends BaseCard {
      */
     public void setOtherButtonDrawable(int otherButtonDrawable) {
         mOtherButtonDrawable = otherButtonDrawable;
+        markChanged(Card.CHANGE_HEADER);
     }
 
     /**
@@ -20,10 +20,19 @@ package com.android.cards.internal;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.RectF;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import com.android.cards.internal.base.BaseCard;
+import com.android.cards.internal.thumbnail.ThumbnailTransformation;
+import com.android.cards.internal.thumbnail.ThumbnailTransformations;
+import com.android.cards.utils.BitmapPool;
 import com.android.cards.view.component.CardThumbnailView;
 
 /**
@@ -99,6 +108,46 @@ public class CardThumbnail extends BaseCard {
      */
     protected int errorResourceId=0;
 
+    /**
+     * Bitmap config used to decode the image. <code>null</code> uses the default config.
+     */
+    protected Bitmap.Config decodeConfig = null;
+
+    /**
+     * Maximum width and height of the decoded image, in pixels. 0 means no limit.
+     */
+    protected int maxDecodeDimension = 0;
+
+    /**
+     * Flag to indicate that the image has no transparency
+     */
+    protected boolean opaque = false;
+
+    /**
+     * Default ratio between the size of the full image and the size of its preview
+     */
+    public static final int DEFAULT_PREVIEW_SCALE = 8;
+
+    /**
+     * Flag to display a low resolution preview before the full image
+     */
+    protected boolean progressive = false;
+
+    /**
+     * Ratio between the size of the full image and the size of its preview
+     */
+    protected int previewScale = DEFAULT_PREVIEW_SCALE;
+
+    /**
+     * Transformations applied to the image on the worker threads, <code>null</code> if none
+     */
+    protected List<ThumbnailTransformation> transformations = null;
+
+    /**
+     * Area of the image to display, in fractions of its size, <code>null</code> for the whole image
+     */
+    protected RectF cropArea = null;
+
     /**
      * Interface for custom source Thumbnail
      */
@@ -114,12 +163,81 @@ public class CardThumbnail extends BaseCard {
         Bitmap getBitmap();
     }
 
+    /**
+     * Custom source which decodes into bitmaps reused from the {@link BitmapPool}.
+     * </p>
+     * The returned bitmap is owned by the library: it can be reused for other images
+     * once it is evicted from the memory cache.
+     */
+    public interface PooledCustomSource extends CustomSource {
+        /**
+         * Use {@link BitmapPool#addInBitmapOptions(android.graphics.BitmapFactory.Options)}
+         * after the bounds pass to decode into a pooled bitmap.
+         *
+         * @param bitmapPool pool of reusable bitmaps
+         * @return the bitmap from custom source
+         */
+        Bitmap getBitmap(BitmapPool bitmapPool);
+    }
+
+    /**
+     * Custom source whose bitmaps can be produced together with the bitmaps of other cards,
+     * for sources which are cheaper per image when asked for many tags at once
+     * (a sprite sheet, a database query...).
+     * </p>
+     * The tags requested within the same main thread message by sources sharing the same
+     * {@link BatchBitmapProducer} are passed to one {@link BatchBitmapProducer#getBitmaps(List)} call.
+     * {@link #getBitmap()} is still used when the source is asked alone.
+     */
+    public interface BatchCustomSource extends CustomSource {
+        /**
+         * @return the producer shared by the sources which can be batched together
+         */
+        BatchBitmapProducer getBatchProducer();
+    }
+
+    /**
+     * Produces the bitmaps of many {@link BatchCustomSource}s at once
+     */
+    public interface BatchBitmapProducer {
+        /**
+         * Called on a worker thread.
+         *
+         * @param tags tags of the pending sources, without duplicates
+         * @return the bitmaps by tag, missing tags are considered failures
+         */
+        Map<String, Bitmap> getBitmaps(List<String> tags);
+    }
+
     protected CustomSource customSource = null;
 
     /**
      * Flag to send a broadcast after the bitmap is attached to imageView
      */
-    protected boolean sendBroadcastAfterAttach = true;
+    protected boolean sendBroadcastAfterAttach = false;
+
+    /**
+     * Listener invoked after the bitmap is attached to imageView
+     */
+    protected OnThumbnailLoadedListener mOnThumbnailLoadedListener;
+
+    /**
+     * Interface to listen for the result of the image loading, in the same process.
+     * It replaces the {@link com.android.cards.Constants.IntentManager#INTENT_ACTION_IMAGE_DOWNLOADED} broadcast.
+     */
+    public interface OnThumbnailLoadedListener {
+
+        /**
+         * Called on the main thread after the bitmap is attached to the imageView,
+         * or when the image can't be loaded.
+         *
+         * @param cardThumbnail thumbnail
+         * @param cardId        id of the parent card, or <code>null</code>
+         * @param result        <code>true</code> if the image has been loaded
+         * @param errorLoading  <code>true</code> if the result refers to the error resource
+         */
+        void onThumbnailLoaded(CardThumbnail cardThumbnail, String cardId, boolean result, boolean errorLoading);
+    }
 
     // -------------------------------------------------------------
     // Constructors
@@ -158,10 +276,17 @@ public class CardThumbnail extends BaseCard {
         return;
     }
 
+    @Override
+    protected int getTitleChange() {
+        return Card.CHANGE_THUMBNAIL;
+    }
+
 
     /**
      * You can override this method to transform the bitmap before
      * is attached to ImageView.
+     * It runs on the UI thread on every bind: prefer {@link #setTransformations(ThumbnailTransformation...)}
+     * for pixel work like rounded corners.
      *
      *
      * @param imageView  imageView
@@ -187,6 +312,7 @@ public class CardThumbnail extends BaseCard {
      */
     public void setDrawableResource(int drawableResource) {
         this.drawableResource = drawableResource;
+        markChanged(Card.CHANGE_THUMBNAIL);
     }
 
     /**
@@ -205,6 +331,7 @@ public class CardThumbnail extends BaseCard {
      */
     public void setUrlResource(String urlResource) {
         this.urlResource = urlResource;
+        markChanged(Card.CHANGE_THUMBNAIL);
     }
 
     /**
@@ -217,7 +344,10 @@ public class CardThumbnail extends BaseCard {
     /**
      * Sets the listener for a custom source Thumbnail
      */
-    public void setCustomSource(CustomSource customSource) { this.customSource = customSource; }
+    public void setCustomSource(CustomSource customSource) {
+        this.customSource = customSource;
+        markChanged(Card.CHANGE_THUMBNAIL);
+    }
 
     /**
      * Indicates if CardThumbnail will use an external library to load image
@@ -235,6 +365,7 @@ public class CardThumbnail extends BaseCard {
      */
     public void setExternalUsage(boolean externalUsage) {
         this.mExternalUsage = externalUsage;
+        markChanged(Card.CHANGE_THUMBNAIL);
     }
 
     /**
@@ -253,6 +384,210 @@ public class CardThumbnail extends BaseCard {
      */
     public void setErrorResource(int errorResourceId) {
         this.errorResourceId = errorResourceId;
+        markChanged(Card.CHANGE_THUMBNAIL);
+    }
+
+    /**
+     * Returns the bitmap config used to decode the image
+     *
+     * @return config, or <code>null</code> for the default config
+     */
+    public Bitmap.Config getDecodeConfig() {
+        return decodeConfig;
+    }
+
+    /**
+     * Sets the bitmap config used to decode the image.
+     * {@link android.graphics.Bitmap.Config#RGB_565} halves the memory used by opaque images.
+     *
+     * @param decodeConfig config, or <code>null</code> for the default config
+     */
+    public void setDecodeConfig(Bitmap.Config decodeConfig) {
+        this.decodeConfig = decodeConfig;
+        markChanged(Card.CHANGE_THUMBNAIL);
+    }
+
+    /**
+     * Returns the maximum width and height of the decoded image
+     *
+     * @return max dimension in pixels, 0 means no limit
+     */
+    public int getMaxDecodeDimension() {
+        return maxDecodeDimension;
+    }
+
+    /**
+     * Sets the maximum width and height of the decoded image
+     *
+     * @param maxDecodeDimension max dimension in pixels, 0 means no limit
+     */
+    public void setMaxDecodeDimension(int maxDecodeDimension) {
+        this.maxDecodeDimension = maxDecodeDimension;
+        markChanged(Card.CHANGE_THUMBNAIL);
+    }
+
+    /**
+     * Indicates if the image has no transparency
+     *
+     * @return <code>true</code> if the image is opaque
+     */
+    public boolean isOpaque() {
+        return opaque;
+    }
+
+    /**
+     * Sets if the image has no transparency.
+     * Opaque images without an explicit config are decoded as {@link android.graphics.Bitmap.Config#RGB_565}.
+     *
+     * @param opaque <code>true</code> if the image is opaque
+     */
+    public void setOpaque(boolean opaque) {
+        this.opaque = opaque;
+        markChanged(Card.CHANGE_THUMBNAIL);
+    }
+
+    /**
+     * Returns the config actually used to decode the image
+     *
+     * @return config
+     */
+    public Bitmap.Config getEffectiveDecodeConfig() {
+        if (decodeConfig != null)
+            return decodeConfig;
+        return opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+    }
+
+    /**
+     * Returns a signature of the decode options, used in the cache keys.
+     *
+     * @return signature, or <code>null</code> for the default options
+     */
+    public String getDecodeSignature() {
+        final Bitmap.Config config = getEffectiveDecodeConfig();
+        final boolean defaultOptions = config == Bitmap.Config.ARGB_8888 && maxDecodeDimension <= 0;
+        if (cropArea == null && (transformations == null || transformations.isEmpty()))
+            return defaultOptions ? null : config.name() + '/' + maxDecodeDimension;
+
+        final StringBuilder signature = new StringBuilder();
+        if (!defaultOptions)
+            signature.append(config.name()).append('/').append(maxDecodeDimension);
+        if (cropArea != null)
+            signature.append("|crop(").append(cropArea.left).append(',').append(cropArea.top).append(',')
+                    .append(cropArea.right).append(',').append(cropArea.bottom).append(')');
+        if (transformations != null) for (ThumbnailTransformation transformation : transformations) {
+            signature.append('|').append(transformation.getSignature());
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Returns the transformations applied to the image
+     *
+     * @return transformations, <code>null</code> if none
+     */
+    public List<ThumbnailTransformation> getTransformations() {
+        return transformations;
+    }
+
+    /**
+     * Sets the transformations applied to the image, in order.
+     * See {@link com.android.cards.internal.thumbnail.ThumbnailTransformations} for the built-in ones.
+     * </p>
+     * They run on the loader's worker threads and the result is cached,
+     * unlike {@link #applyBitmap(View, Bitmap)} which runs on the UI thread on every bind.
+     *
+     * @param transformations transformations, none to remove them
+     */
+    public void setTransformations(ThumbnailTransformation... transformations) {
+        this.transformations = transformations == null || transformations.length == 0 ? null :
+                new ArrayList<ThumbnailTransformation>(Arrays.asList(transformations));
+        markChanged(Card.CHANGE_THUMBNAIL);
+    }
+
+    /**
+     * Indicates if the chain starts with a {@link ThumbnailTransformations#centerCrop()}.
+     * In this case only the visible region of drawable and url images is decoded.
+     *
+     * @return <code>true</code> if the image is center cropped
+     */
+    public boolean isCenterCrop() {
+        return transformations != null && !transformations.isEmpty()
+                && ThumbnailTransformations.isCenterCrop(transformations.get(0));
+    }
+
+    /**
+     * Returns the area of the image to display
+     *
+     * @return area in fractions of the image size, <code>null</code> for the whole image
+     */
+    public RectF getCropArea() {
+        return cropArea;
+    }
+
+    /**
+     * Sets the area of the image to display, for example the focus area of a panorama.
+     * Only this area of drawable and url images is decoded, at the sample size needed
+     * by the ImageView.
+     *
+     * @param cropArea area in fractions of the image size (0..1), <code>null</code> for the whole image
+     */
+    public void setCropArea(RectF cropArea) {
+        this.cropArea = cropArea == null ? null :
+                new RectF(cropArea.left, cropArea.top, cropArea.right, cropArea.bottom);
+        markChanged(Card.CHANGE_THUMBNAIL);
+    }
+
+    /**
+     * Adds a transformation at the end of the chain
+     *
+     * @param transformation transformation
+     */
+    public void addTransformation(ThumbnailTransformation transformation) {
+        if (transformation == null) return;
+        if (transformations == null)
+            transformations = new ArrayList<ThumbnailTransformation>();
+        transformations.add(transformation);
+        markChanged(Card.CHANGE_THUMBNAIL);
+    }
+
+    /**
+     * Indicates if a low resolution preview is displayed before the full image
+     *
+     * @return <code>true</code> in progressive mode
+     */
+    public boolean isProgressive() {
+        return progressive;
+    }
+
+    /**
+     * Sets the progressive mode, useful for large thumbnails loaded from a url or a resource.
+     * A heavily subsampled preview is decoded first, from the same fetched bytes,
+     * and it cross-fades to the full image. During a fling only the previews are decoded.
+     *
+     * @param progressive <code>true</code> to display a preview first
+     */
+    public void setProgressive(boolean progressive) {
+        this.progressive = progressive;
+        markChanged(Card.CHANGE_THUMBNAIL);
+    }
+
+    /**
+     * Returns the ratio between the size of the full image and the size of its preview
+     *
+     * @return ratio
+     */
+    public int getPreviewScale() {
+        return previewScale;
+    }
+
+    /**
+     * Sets the ratio between the size of the full image and the size of its preview
+     *
+     * @param previewScale ratio, greater than 1
+     */
+    public void setPreviewScale(int previewScale) {
+        this.previewScale = Math.max(2, previewScale);
+        markChanged(Card.CHANGE_THUMBNAIL);
     }
 
     /**
@@ -265,7 +600,10 @@ public class CardThumbnail extends BaseCard {
     }
 
     /**
-     * Sets the flag to send a broadcast after the bitmap is attached
+     * Sets the flag to send a broadcast after the bitmap is attached.
+     * </p>
+     * It is a compatibility mode, disabled by default: each broadcast is a system-wide IPC.
+     * Use {@link #setOnThumbnailLoadedListener(OnThumbnailLoadedListener)} instead.
      *
      * @param sendBroadcastAfterAttach
      */
@@ -273,6 +611,24 @@ public class CardThumbnail extends BaseCard {
         this.sendBroadcastAfterAttach = sendBroadcastAfterAttach;
     }
 
+    /**
+     * Returns the listener invoked after the bitmap is attached
+     *
+     * @return listener
+     */
+    public OnThumbnailLoadedListener getOnThumbnailLoadedListener() {
+        return mOnThumbnailLoadedListener;
+    }
+
+    /**
+     * Sets the listener invoked after the bitmap is attached
+     *
+     * @param onThumbnailLoadedListener listener
+     */
+    public void setOnThumbnailLoadedListener(OnThumbnailLoadedListener onThumbnailLoadedListener) {
+        mOnThumbnailLoadedListener = onThumbnailLoadedListener;
+    }
+
     /**
      * Return the CardThumbnailCardView
      * @return
@@ -74,6 +74,12 @@ public abstract class BaseCard implements CardUIInferface {
      */
     protected int type=0;
 
+    /**
+     * Pieces of the card changed since the last bind.
+     * See {@link Card#CHANGE_ALL} for the values.
+     */
+    protected int mChanges=0;
+
     // -------------------------------------------------------------
     //  Constructors
     // -------------------------------------------------------------
@@ -167,6 +173,49 @@ public abstract class BaseCard implements CardUIInferface {
      */
     public void setTitle(String title) {
         mTitle = title;
+        markChanged(getTitleChange());
+    }
+
+    /**
+     * Returns the piece of the card which displays the title
+     *
+     * @return one of the {@link Card#CHANGE_ALL} values
+     */
+    protected int getTitleChange() {
+        return Card.CHANGE_CONTENT;
+    }
+
+    // -------------------------------------------------------------
+    //  Changes
+    // -------------------------------------------------------------
+
+    /**
+     * Records that some pieces of the card changed. If {@link Card#isPartialRefreshEnabled()},
+     * {@link Card#notifyDataSetChanged()} refreshes only the changed pieces.
+     * </p>
+     * The setters record their changes: call it after changing values of your own model,
+     * for example with {@link Card#CHANGE_CONTENT} for values displayed in the inner view.
+     *
+     * @param changes one or more of the {@link Card#CHANGE_ALL} values
+     */
+    public void markChanged(int changes) {
+        mChanges |= changes;
+    }
+
+    /**
+     * Returns the pieces of the card changed since the last bind
+     *
+     * @return changes, 0 if nothing was recorded
+     */
+    public int getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * Forgets the changes. It is called once the card is bound to a view.
+     */
+    public void clearChanges() {
+        mChanges = 0;
     }
 
     /**
@@ -209,6 +258,8 @@ public abstract class BaseCard implements CardUIInferface {
      */
     public void setId(String id) {
         mId = id;
+        //The id keys the state cached for the card: refresh everything
+        markChanged(Card.CHANGE_ALL);
     }
 
     /**
@@ -0,0 +1,958 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.internal.thumbnail;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.android.cards.utils.BitmapPool;
+import com.android.cards.utils.CacheUtil;
+import com.android.cards.utils.ThumbnailMetrics;
+
+/**
+ * Process-wide engine which loads the thumbnails for all
+ * {@link com.android.cards.view.component.CardThumbnailView}s.
+ * </p>
+ * Requests for the same key which are in flight at the same time are merged:
+ * the image is decoded once and the result is delivered to every waiting ImageView.
+ * The work runs on a bounded executor sized to the available cores, in order of
+ * {@link ThumbnailRequest#getPriority()}: visible cards first, then prefetches, then error resources.
+ * Jobs whose ImageViews are all rebound or detached are removed from the queue before they start.
+ * </p>
+ * Lists pause the loader during a fling with {@link #pause(Object)}: new jobs are parked
+ * until {@link #resume(Object)}, and only memory cache hits and previews are served in the meantime.
+ * </p>
+ * Images which are about to scroll in can be warmed with {@link #prefetch(ThumbnailRequest, Object, int)}.
+ * Prefetches run at a lower priority, within a fraction of the memory cache, and are promoted
+ * when an ImageView requests the same key.
+ * </p>
+ * Requests with a {@link ThumbnailRequest#getBatchKey()} are held until the end of the current
+ * main thread message, then the requests of each batch key are decoded together by one worker.
+ * </p>
+ * The loader records its activity in the {@link ThumbnailMetrics} of {@link CacheUtil#getMetrics()}.
+ * </p>
+ * All public methods have to be called from the main thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class ThumbnailLoader {
+
+    private static final String TAG = "ThumbnailLoader";
+
+    private static final int KEEP_ALIVE_SECONDS = 1;
+
+    /**
+     * Prefetched images can use up to 1/PREFETCH_CACHE_FRACTION of the memory cache
+     */
+    private static final int PREFETCH_CACHE_FRACTION = 4;
+
+    /**
+     * Target sizes are rounded up to a multiple of this value, in pixels
+     */
+    public static final int SIZE_BUCKET = 64;
+
+    /**
+     * Maximum number of requests decoded in one batch
+     */
+    public static final int MAX_BATCH_SIZE = 32;
+
+    /**
+     * Callback invoked on the main thread when a request is completed
+     */
+    public interface Callback {
+
+        /**
+         * Called when the image is available for the ImageView.
+         *
+         * @param imageView imageView which requested the image
+         * @param bitmap    the bitmap, or <code>null</code> if an error occurred
+         */
+        void onThumbnailLoaded(ImageView imageView, Bitmap bitmap);
+    }
+
+    //Singleton
+    private static ThumbnailLoader sInstance;
+
+    /**
+     * Executor used to decode images
+     */
+    protected ExecutorService mExecutor;
+
+    /**
+     * Jobs in flight, by key. Accessed only on the main thread.
+     */
+    protected final HashMap<String, LoadJob> mInFlight = new HashMap<String, LoadJob>();
+
+    protected final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Owners which paused the loader
+     */
+    protected final WeakHashMap<Object, Boolean> mPausedBy = new WeakHashMap<Object, Boolean>();
+
+    /**
+     * Jobs parked while the loader is paused
+     */
+    protected final ArrayList<LoadJob> mParkedJobs = new ArrayList<LoadJob>();
+
+    /**
+     * Prefetch jobs without waiting ImageViews
+     */
+    protected final ArrayList<LoadJob> mPrefetchJobs = new ArrayList<LoadJob>();
+
+    /**
+     * Estimated bytes of the prefetch jobs
+     */
+    protected long mPrefetchBytes = 0;
+
+    /**
+     * Orders the jobs with the same priority
+     */
+    private long mSequence = 0;
+
+    /**
+     * Jobs waiting for the end of the scheduling window, by batch key
+     */
+    protected final LinkedHashMap<Object, ArrayList<LoadJob>> mPendingBatches =
+            new LinkedHashMap<Object, ArrayList<LoadJob>>();
+
+    /**
+     * Number of jobs parked or waiting for their batch, counted on the main thread
+     * so that the workers can sample the queue depth
+     */
+    protected volatile int mHeldJobCount = 0;
+
+    private final Runnable mFlushBatches = new Runnable() {
+        @Override
+        public void run() {
+            flushBatches();
+        }
+    };
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    protected ThumbnailLoader() {
+        mExecutor = createExecutor(getDefaultPoolSize());
+    }
+
+    public static ThumbnailLoader getInstance() {
+        if (sInstance != null)
+            return sInstance;
+        else
+            return sInstance = new ThumbnailLoader();
+    }
+
+    // -------------------------------------------------------------
+    // Executor
+    // -------------------------------------------------------------
+
+    /**
+     * Returns the default number of worker threads, based on the available cores.
+     *
+     * @return number of threads
+     */
+    public static int getDefaultPoolSize() {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(2, Math.min(cores, 4));
+    }
+
+    /**
+     * Creates the bounded executor used by the loader.
+     * Its queue runs the jobs in order of priority.
+     *
+     * @param poolSize number of worker threads
+     * @return executor
+     */
+    protected ExecutorService createExecutor(int poolSize) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+                new WorkerThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Sets the number of worker threads.
+     * Jobs already submitted complete on the previous executor.
+     *
+     * @param poolSize number of worker threads
+     */
+    public void setPoolSize(int poolSize) {
+        if (poolSize < 1)
+            throw new IllegalArgumentException("poolSize must be greater than 0");
+        setExecutor(createExecutor(poolSize));
+    }
+
+    /**
+     * Sets a custom executor used to decode images.
+     * Jobs already submitted complete on the previous executor.
+     * The jobs are {@link Comparable}: use a priority queue to keep the order of priority.
+     *
+     * @param executor executor
+     */
+    public void setExecutor(ExecutorService executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("executor can't be null");
+        ExecutorService old = mExecutor;
+        mExecutor = executor;
+        if (old != null && old != executor)
+            old.shutdown();
+    }
+
+    // -------------------------------------------------------------
+    // Keys
+    // -------------------------------------------------------------
+
+    /**
+     * Rounds a target size up to its bucket, so that close sizes share the same decode.
+     *
+     * @param size size in pixels
+     * @return bucketed size
+     */
+    public static int getBucketedSize(int size) {
+        if (size <= 0) return 0;
+        return ((size + SIZE_BUCKET - 1) / SIZE_BUCKET) * SIZE_BUCKET;
+    }
+
+    /**
+     * Builds the key of an image decoded for a target size.
+     *
+     * @param source key of the source (url, resource ID...)
+     * @param width  bucketed target width
+     * @param height bucketed target height
+     * @return key, or <code>null</code> if the source is <code>null</code>
+     */
+    public static String buildKey(String source, int width, int height) {
+        return buildKey(source, width, height, null);
+    }
+
+    /**
+     * Builds the key of an image decoded for a target size with specific decode options.
+     *
+     * @param source    key of the source (url, resource ID...)
+     * @param width     bucketed target width
+     * @param height    bucketed target height
+     * @param signature signature of the decode options, <code>null</code> for the default options
+     * @return key, or <code>null</code> if the source is <code>null</code>
+     */
+    public static String buildKey(String source, int width, int height, String signature) {
+        if (source == null) return null;
+        final StringBuilder key = new StringBuilder(source.length() + 24);
+        key.append(source).append('@').append(width).append('x').append(height);
+        if (signature != null)
+            key.append('#').append(signature);
+        return key.toString();
+    }
+
+    // -------------------------------------------------------------
+    // Load
+    // -------------------------------------------------------------
+
+    /**
+     * Loads the image described by the request into the ImageView.
+     * </p>
+     * If a request with the same key is already in flight, the ImageView waits for
+     * its result instead of starting a new job.
+     *
+     * @param request   request
+     * @param imageView imageView
+     * @param callback  callback invoked on the main thread with the result
+     * @return <code>false</code> if the same work is already in progress for this ImageView
+     */
+    public boolean load(ThumbnailRequest request, ImageView imageView, Callback callback) {
+        return load(request, imageView, callback, null);
+    }
+
+    /**
+     * Loads the image described by the request into the ImageView, displaying a placeholder
+     * (for example a low resolution preview) until the image is available.
+     * A request without a key can't be loaded: the ImageView is cleared and the callback
+     * receives the failure.
+     *
+     * @param request     request
+     * @param imageView   imageView
+     * @param callback    callback invoked on the main thread with the result
+     * @param placeholder bitmap displayed in the meantime, or <code>null</code>
+     * @return <code>false</code> if the same work is already in progress for this ImageView
+     */
+    public boolean load(ThumbnailRequest request, ImageView imageView, Callback callback, Bitmap placeholder) {
+        final String key = request.getKey();
+        if (imageView == null) return false;
+
+        if (key == null) {
+            cancel(imageView);
+            imageView.setImageDrawable(null);
+            callback.onThumbnailLoaded(imageView, null);
+            return true;
+        }
+
+        if (!cancelPotentialWork(key, imageView))
+            return false;
+
+        LoadJob job = mInFlight.get(key);
+        final boolean coalesced = job != null;
+        if (!coalesced) {
+            job = new LoadJob(request, request.getPriority());
+            mInFlight.put(key, job);
+        } else {
+            CacheUtil.getMetrics().recordCoalesced();
+        }
+
+        final Ticket ticket = new Ticket(job, imageView, callback);
+        job.mTickets.add(ticket);
+        imageView.setImageDrawable(new AsyncDrawable(imageView.getResources(), ticket, placeholder));
+
+        if (!coalesced) {
+            submit(job);
+        } else if (job.mPrefetchOwner != null || request.getPriority() < job.mPriority) {
+            promote(job, request.getPriority());
+        }
+        return true;
+    }
+
+    /**
+     * Submits a job to the executor, or parks it while the loader is paused
+     *
+     * @param job job
+     */
+    protected void submit(LoadJob job) {
+        if (isPaused() && !job.mRequest.isPreview()) {
+            mParkedJobs.add(job);
+        } else {
+            job.mSequence = mSequence++;
+            job.mState.set(LoadJob.STATE_QUEUED);
+
+            final Object batchKey = job.mRequest.getBatchKey();
+            if (batchKey != null) {
+                ArrayList<LoadJob> batch = mPendingBatches.get(batchKey);
+                if (batch == null) {
+                    batch = new ArrayList<LoadJob>();
+                    mPendingBatches.put(batchKey, batch);
+                }
+                batch.add(job);
+                if (mPendingBatches.size() == 1 && batch.size() == 1)
+                    mMainHandler.post(mFlushBatches);
+            } else {
+                mExecutor.execute(job);
+            }
+        }
+        recordQueueDepth();
+    }
+
+    /**
+     * Counts the jobs held by the loader and records the number of jobs which are waiting to run.
+     * Called on the main thread.
+     */
+    protected void recordQueueDepth() {
+        int held = mParkedJobs.size();
+        for (ArrayList<LoadJob> batch : mPendingBatches.values()) {
+            held += batch.size();
+        }
+        mHeldJobCount = held;
+        sampleQueueDepth();
+    }
+
+    /**
+     * Records the number of jobs which are waiting to run.
+     * Called on any thread: the jobs held by the loader are the ones counted last on the main thread.
+     */
+    protected void sampleQueueDepth() {
+        int depth = mHeldJobCount;
+        final ExecutorService executor = mExecutor;
+        if (executor instanceof ThreadPoolExecutor)
+            depth += ((ThreadPoolExecutor) executor).getQueue().size();
+        CacheUtil.getMetrics().recordQueueDepth(depth);
+    }
+
+    /**
+     * Submits the jobs collected in the scheduling window, one {@link BatchJob} for each batch key.
+     * Jobs dropped in the meantime are skipped.
+     */
+    protected void flushBatches() {
+        for (ArrayList<LoadJob> jobs : mPendingBatches.values()) {
+            BatchJob batch = null;
+            for (LoadJob job : jobs) {
+                if (job.mState.get() != LoadJob.STATE_QUEUED)
+                    continue;
+                if (batch == null || batch.mJobs.size() >= MAX_BATCH_SIZE) {
+                    if (batch != null)
+                        executeBatch(batch);
+                    batch = new BatchJob(job);
+                }
+                batch.add(job);
+            }
+            if (batch != null)
+                executeBatch(batch);
+        }
+        mPendingBatches.clear();
+        recordQueueDepth();
+    }
+
+    private void executeBatch(BatchJob batch) {
+        if (batch.mJobs.size() == 1) {
+            // Nothing to share
+            mExecutor.execute(batch.mJobs.get(0));
+        } else {
+            for (LoadJob job : batch.mJobs) {
+                job.mBatch = batch;
+            }
+            batch.mSequence = mSequence++;
+            batch.mState.set(LoadJob.STATE_QUEUED);
+            mExecutor.execute(batch);
+        }
+    }
+
+    /**
+     * Raises the priority of a job requested by an ImageView.
+     * A job already running is left to complete.
+     * </p>
+     * The queue orders the jobs when they are inserted: a job in the queue is removed,
+     * promoted and queued again. A job the executor can't remove keeps its priority.
+     *
+     * @param job      job
+     * @param priority priority of the new request
+     */
+    protected void promote(LoadJob job, int priority) {
+        removePrefetch(job);
+        job.mLowPriority = false;
+        if (priority >= job.mPriority)
+            return;
+
+        // A member of a batch isn't queued itself: its batch is
+        if (job.mBatch != null) {
+            job.mPriority = priority;
+            job = job.mBatch;
+            if (priority >= job.mPriority)
+                return;
+        }
+
+        if (job.mState.get() != LoadJob.STATE_QUEUED || isPendingBatch(job)) {
+            // Parked, collected for a batch or running: not in the queue
+            job.mPriority = priority;
+        } else if (mExecutor instanceof ThreadPoolExecutor && ((ThreadPoolExecutor) mExecutor).remove(job)) {
+            job.mPriority = priority;
+            mExecutor.execute(job);
+        }
+    }
+
+    private boolean isPendingBatch(LoadJob job) {
+        final Object batchKey = job.mRequest.getBatchKey();
+        final ArrayList<LoadJob> jobs = batchKey != null ? mPendingBatches.get(batchKey) : null;
+        return jobs != null && jobs.contains(job);
+    }
+
+    // -------------------------------------------------------------
+    // Prefetch
+    // -------------------------------------------------------------
+
+    /**
+     * Warms the memory cache with an image which is not displayed yet.
+     * </p>
+     * The request is ignored while the loader is paused, and when the prefetches in
+     * flight would use more than a fraction of the memory cache.
+     *
+     * @param request        request
+     * @param owner          object which prefetches the image (usually the list)
+     * @param estimatedBytes estimated size of the decoded image
+     * @return <code>true</code> if the image is already in flight or has been queued
+     */
+    public boolean prefetch(ThumbnailRequest request, Object owner, int estimatedBytes) {
+        final String key = request.getKey();
+        if (key == null || owner == null || isPaused() || !request.isCacheable())
+            return false;
+        if (mInFlight.containsKey(key))
+            return true;
+
+        final LruCache<String, Bitmap> memoryCache = CacheUtil.getMemoryCache();
+        if (memoryCache == null)
+            return false;
+        // The memory cache is measured in kilobytes
+        final long budget = (long) memoryCache.maxSize() * 1024 / PREFETCH_CACHE_FRACTION;
+        if (mPrefetchBytes + estimatedBytes > budget)
+            return false;
+
+        final LoadJob job = new LoadJob(request, ThumbnailRequest.PRIORITY_PREFETCH);
+        job.mPrefetchOwner = owner;
+        job.mLowPriority = true;
+        job.mEstimatedBytes = estimatedBytes;
+        mInFlight.put(key, job);
+        mPrefetchJobs.add(job);
+        mPrefetchBytes += estimatedBytes;
+        submit(job);
+        return true;
+    }
+
+    /**
+     * Cancels the prefetches of the owner which have not started yet,
+     * for example when the list changes direction.
+     *
+     * @param owner object which prefetched the images
+     */
+    public void cancelPrefetch(Object owner) {
+        for (int i = mPrefetchJobs.size() - 1; i >= 0; i--) {
+            final LoadJob job = mPrefetchJobs.get(i);
+            if (job.mPrefetchOwner == owner && cancelJob(job)) {
+                removePrefetch(job);
+                if (mInFlight.get(job.mKey) == job)
+                    mInFlight.remove(job.mKey);
+            }
+        }
+    }
+
+    protected void removePrefetch(LoadJob job) {
+        if (job.mPrefetchOwner != null && mPrefetchJobs.remove(job))
+            mPrefetchBytes -= job.mEstimatedBytes;
+        job.mPrefetchOwner = null;
+    }
+
+    // -------------------------------------------------------------
+    // Pause
+    // -------------------------------------------------------------
+
+    /**
+     * Pauses the loader, for example while a list is flinging.
+     * New jobs are parked until all the owners resume the loader.
+     *
+     * @param owner object which pauses the loader (usually the list)
+     */
+    public void pause(Object owner) {
+        mPausedBy.put(owner, Boolean.TRUE);
+    }
+
+    /**
+     * Resumes the loader paused by the owner. Parked jobs which still have
+     * waiting ImageViews are submitted.
+     *
+     * @param owner object which paused the loader
+     */
+    public void resume(Object owner) {
+        if (mPausedBy.remove(owner) == null || isPaused())
+            return;
+
+        final ArrayList<LoadJob> parked = new ArrayList<LoadJob>(mParkedJobs);
+        mParkedJobs.clear();
+        for (LoadJob job : parked) {
+            if (!job.mTickets.isEmpty()) {
+                submit(job);
+            } else if (mInFlight.get(job.mKey) == job) {
+                mInFlight.remove(job.mKey);
+            }
+        }
+    }
+
+    /**
+     * Indicates if the loader is paused
+     *
+     * @return <code>true</code> if at least one owner paused the loader
+     */
+    public boolean isPaused() {
+        return !mPausedBy.isEmpty();
+    }
+
+    /**
+     * Cancels the work associated with the ImageView if it is loading a different key.
+     *
+     * @param key       key requested now
+     * @param imageView imageView
+     * @return <code>false</code> if the same work is already in progress
+     */
+    public boolean cancelPotentialWork(String key, ImageView imageView) {
+        final Ticket ticket = getTicket(imageView);
+
+        if (ticket != null) {
+            if (ticket.mJob.mKey.equals(key)) {
+                // The same work is already in progress
+                return false;
+            }
+            detach(ticket);
+        }
+        // No work associated with the ImageView, or an existing work was cancelled
+        return true;
+    }
+
+    /**
+     * Cancels any work associated with the ImageView.
+     *
+     * @param imageView imageView
+     * @return <code>true</code> if the ImageView was waiting for an image
+     */
+    public boolean cancel(ImageView imageView) {
+        final Ticket ticket = getTicket(imageView);
+        if (ticket != null && ticket.mJob.mTickets.contains(ticket)) {
+            detach(ticket);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the ticket from its job. A job without waiting ImageViews is dropped
+     * if it has not started yet; otherwise it completes and only fills the cache.
+     *
+     * @param ticket ticket
+     */
+    protected void detach(Ticket ticket) {
+        final LoadJob job = ticket.mJob;
+        job.mTickets.remove(ticket);
+        if (!job.mTickets.isEmpty())
+            return;
+
+        if (cancelJob(job) && mInFlight.get(job.mKey) == job)
+            mInFlight.remove(job.mKey);
+    }
+
+    /**
+     * Drops a job which has not started yet
+     *
+     * @param job job
+     * @return <code>true</code> if the job will not run
+     */
+    protected boolean cancelJob(LoadJob job) {
+        if (job.mState.get() == LoadJob.STATE_IDLE) {
+            // Parked while paused
+            if (!mParkedJobs.remove(job))
+                return false;
+        } else {
+            if (!job.mState.compareAndSet(LoadJob.STATE_QUEUED, LoadJob.STATE_CANCELLED))
+                return false;
+            if (mExecutor instanceof ThreadPoolExecutor)
+                ((ThreadPoolExecutor) mExecutor).remove(job);
+        }
+        CacheUtil.getMetrics().recordCancel(job.mKey);
+        recordQueueDepth();
+        return true;
+    }
+
+    protected static Ticket getTicket(ImageView imageView) {
+        if (imageView != null) {
+            final Drawable drawable = imageView.getDrawable();
+            if (drawable instanceof AsyncDrawable) {
+                return ((AsyncDrawable) drawable).getTicket();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Delivers the result of a job to all ImageViews still waiting for it.
+     * Called on the main thread.
+     *
+     * @param job    job
+     * @param bitmap result
+     */
+    protected void deliver(LoadJob job, Bitmap bitmap) {
+        if (mInFlight.get(job.mKey) == job)
+            mInFlight.remove(job.mKey);
+        removePrefetch(job);
+
+        // Callbacks can start new work on the same ImageView
+        final ArrayList<Ticket> tickets = new ArrayList<Ticket>(job.mTickets);
+        job.mTickets.clear();
+
+        for (Ticket ticket : tickets) {
+            final ImageView imageView = ticket.mImageViewReference.get();
+            if (imageView != null && getTicket(imageView) == ticket && ticket.mCallback != null) {
+                ticket.mCallback.onThumbnailLoaded(imageView, bitmap);
+            }
+        }
+    }
+
+    protected void addBitmapToMemoryCache(String key, Bitmap bitmap) {
+        final LruCache<String, Bitmap> memoryCache = CacheUtil.getMemoryCache();
+        if (memoryCache != null && key != null && bitmap != null && memoryCache.get(key) == null) {
+            memoryCache.put(key, bitmap);
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Job
+    // -------------------------------------------------------------
+
+    /**
+     * A decode shared by all the ImageViews requesting the same key
+     */
+    protected class LoadJob implements Runnable, Comparable<LoadJob> {
+
+        protected static final int STATE_IDLE = 0;
+        protected static final int STATE_QUEUED = 1;
+        protected static final int STATE_RUNNING = 2;
+        protected static final int STATE_CANCELLED = 3;
+
+        protected final String mKey;
+        protected final ThumbnailRequest mRequest;
+
+        protected final AtomicInteger mState = new AtomicInteger(STATE_IDLE);
+
+        /**
+         * Priority in the queue, changed only while the job is not queued
+         */
+        protected int mPriority;
+
+        protected long mSequence;
+
+        /**
+         * Batch which runs the job, <code>null</code> if the job runs alone. Accessed only on the main thread.
+         */
+        protected BatchJob mBatch;
+
+        /**
+         * ImageViews waiting for the result. Accessed only on the main thread.
+         */
+        protected final ArrayList<Ticket> mTickets = new ArrayList<Ticket>(1);
+
+        /**
+         * Owner of a prefetch without waiting ImageViews. Accessed only on the main thread.
+         */
+        protected Object mPrefetchOwner;
+
+        protected int mEstimatedBytes;
+
+        protected volatile boolean mLowPriority;
+
+        public LoadJob(ThumbnailRequest request, int priority) {
+            mRequest = request;
+            mKey = request.getKey();
+            mPriority = priority;
+        }
+
+        @Override
+        public int compareTo(LoadJob another) {
+            if (mPriority != another.mPriority)
+                return mPriority < another.mPriority ? -1 : 1;
+            return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            // Dropped while queued
+            if (!mState.compareAndSet(STATE_QUEUED, STATE_RUNNING))
+                return;
+
+            setThreadPriority();
+            sampleQueueDepth();
+
+            final long start = SystemClock.uptimeMillis();
+            Bitmap bitmap = null;
+            try {
+                bitmap = mRequest.transform(mRequest.decode());
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Error while decoding image " + mKey, e);
+            } catch (OutOfMemoryError e) {
+                Log.w(TAG, "Out of memory while decoding image " + mKey, e);
+            } finally {
+                // Any other error is delivered as a failure too: the key must not stay in flight
+                complete(bitmap);
+                recordDecode(SystemClock.uptimeMillis() - start, bitmap);
+                sampleQueueDepth();
+            }
+        }
+
+        protected void setThreadPriority() {
+            Process.setThreadPriority(mLowPriority ?
+                    Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE :
+                    Process.THREAD_PRIORITY_BACKGROUND);
+        }
+
+        protected void recordDecode(long millis, Bitmap bitmap) {
+            // The time spent reading the source is recorded as a fetch
+            CacheUtil.getMetrics().recordDecode(mKey, Math.max(0, millis - mRequest.getFetchMillis()),
+                    bitmap != null ? BitmapPool.getBitmapByteCount(bitmap) : 0);
+        }
+
+        /**
+         * Caches the result and posts it to the main thread. Called on the worker thread.
+         *
+         * @param bitmap result
+         */
+        protected void complete(Bitmap bitmap) {
+            final boolean retained = bitmap != null && mRequest.isCacheable();
+            try {
+                if (bitmap == null) {
+                    // Don't retry a missing or broken source until the failure expires.
+                    // Timeouts, network errors and out of memory are retried on the next load.
+                    if (mRequest.isPermanentFailure())
+                        CacheUtil.getNegativeCache().put(mRequest.getSource());
+                } else if (retained) {
+                    // Retained until the delivery: an eviction in the meantime must not pool it
+                    CacheUtil.getBitmapPool().retain(bitmap);
+                    addBitmapToMemoryCache(mKey, bitmap);
+                }
+            } finally {
+                // The delivery removes the job from the jobs in flight
+                final Bitmap result = bitmap;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            deliver(LoadJob.this, result);
+                        } finally {
+                            // The ImageViews which display the bitmap retain it on their own
+                            if (retained)
+                                CacheUtil.getBitmapPool().release(result);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Decodes the jobs of the same batch key together.
+     * Each job keeps its own state and tickets, so it can still be dropped or promoted
+     * until the batch starts.
+     */
+    protected class BatchJob extends LoadJob {
+
+        protected final ArrayList<LoadJob> mJobs = new ArrayList<LoadJob>();
+
+        public BatchJob(LoadJob first) {
+            super(first.mRequest, first.mPriority);
+        }
+
+        protected void add(LoadJob job) {
+            mJobs.add(job);
+            mPriority = Math.min(mPriority, job.mPriority);
+            mLowPriority = mJobs.size() == 1 ? job.mLowPriority : mLowPriority && job.mLowPriority;
+        }
+
+        @Override
+        public void run() {
+            if (!mState.compareAndSet(STATE_QUEUED, STATE_RUNNING))
+                return;
+
+            final List<LoadJob> jobs = new ArrayList<LoadJob>(mJobs.size());
+            final List<ThumbnailRequest> requests = new ArrayList<ThumbnailRequest>(mJobs.size());
+            for (LoadJob job : mJobs) {
+                // Dropped while queued
+                if (job.mState.compareAndSet(STATE_QUEUED, STATE_RUNNING)) {
+                    jobs.add(job);
+                    requests.add(job.mRequest);
+                }
+            }
+            if (jobs.isEmpty())
+                return;
+
+            setThreadPriority();
+            sampleQueueDepth();
+
+            final long start = SystemClock.uptimeMillis();
+            int completed = 0;
+            try {
+                Bitmap[] bitmaps = null;
+                try {
+                    bitmaps = requests.get(0).decodeBatch(requests);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Error while decoding batch of " + requests.size() + " images", e);
+                } catch (OutOfMemoryError e) {
+                    Log.w(TAG, "Out of memory while decoding batch of " + requests.size() + " images", e);
+                }
+                final long batchMillis = SystemClock.uptimeMillis() - start;
+                while (completed < jobs.size()) {
+                    final int i = completed;
+                    final LoadJob job = jobs.get(i);
+                    final long transformStart = SystemClock.uptimeMillis();
+                    Bitmap bitmap = null;
+                    try {
+                        bitmap = job.mRequest.transform(bitmaps != null && i < bitmaps.length ? bitmaps[i] : null);
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "Error while transforming image " + job.mKey, e);
+                    } catch (OutOfMemoryError e) {
+                        Log.w(TAG, "Out of memory while transforming image " + job.mKey, e);
+                    }
+                    completed++;
+                    job.complete(bitmap);
+                    // Each image is charged its share of the batch
+                    job.recordDecode(batchMillis / jobs.size() + SystemClock.uptimeMillis() - transformStart, bitmap);
+                }
+            } finally {
+                // Any other error is delivered as a failure to the jobs left: their keys must not stay in flight
+                for (int i = completed; i < jobs.size(); i++) {
+                    jobs.get(i).complete(null);
+                }
+                sampleQueueDepth();
+            }
+        }
+    }
+
+    /**
+     * Binds an ImageView to a job
+     */
+    protected static class Ticket {
+
+        protected final LoadJob mJob;
+        protected final WeakReference<ImageView> mImageViewReference;
+        protected final Callback mCallback;
+
+        public Ticket(LoadJob job, ImageView imageView, Callback callback) {
+            mJob = job;
+            // Use a WeakReference to ensure the ImageView can be garbage collected
+            mImageViewReference = new WeakReference<ImageView>(imageView);
+            mCallback = callback;
+        }
+    }
+
+    /**
+     * Placeholder drawable which binds the ImageView to its pending work
+     */
+    static class AsyncDrawable extends BitmapDrawable {
+        private final WeakReference<Ticket> ticketReference;
+
+        public AsyncDrawable(Resources res, Ticket ticket, Bitmap placeholder) {
+            super(res, placeholder);
+            ticketReference = new WeakReference<Ticket>(ticket);
+        }
+
+        public Ticket getTicket() {
+            return ticketReference.get();
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "CardThumbnail #" + mCount.getAndIncrement());
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.internal.thumbnail;
+
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.android.cards.internal.Card;
+import com.android.cards.view.base.CardViewWrapper;
+import com.android.cards.view.component.CardThumbnailView;
+
+/**
+ * Warms the thumbnail cache for the cards which are about to scroll into a list.
+ * </p>
+ * The list reports its visible range with {@link #onScroll(int, int, int)}. The prefetcher
+ * follows the scroll direction and loads the thumbnails of the next cards through
+ * {@link ThumbnailLoader#prefetch(ThumbnailRequest, Object, int)}, looking further ahead
+ * when the list scrolls faster. Pending prefetches are cancelled when the direction reverses.
+ * </p>
+ * Thumbnails are decoded at the size of the thumbnails currently on screen.
+ * It has to be used on the main thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class ThumbnailPrefetcher {
+
+    /**
+     * Default number of cards prefetched ahead of the visible ones
+     */
+    public static final int DEFAULT_PREFETCH_COUNT = 3;
+
+    /**
+     * The prefetch window is extended by the cards which scroll in within this time
+     */
+    private static final int LOOKAHEAD_MILLIS = 500;
+
+    /**
+     * Provides the cards of the list
+     */
+    public interface CardProvider {
+
+        /**
+         * Returns the card at the position
+         *
+         * @param position adapter position
+         * @return the card, or <code>null</code> if the item is not a card
+         */
+        Card getCard(int position);
+    }
+
+    protected final ViewGroup mList;
+    protected final CardProvider mCardProvider;
+
+    protected int mPrefetchCount = DEFAULT_PREFETCH_COUNT;
+
+    private int mFirstVisible = -1;
+    private int mLastVisible = -1;
+    private long mLastScrollTime;
+
+    /**
+     * Smoothed scroll velocity, in cards per millisecond
+     */
+    private float mVelocity;
+
+    /**
+     * 1 when scrolling down, -1 when scrolling up
+     */
+    private int mDirection = 1;
+
+    /**
+     * Furthest position already prefetched in the current direction, -1 if none
+     */
+    private int mPrefetchedEdge = -1;
+
+    private final int[] mTargetSize = new int[2];
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param list         list which displays the cards, owner of the prefetches
+     * @param cardProvider provider of the cards
+     */
+    public ThumbnailPrefetcher(ViewGroup list, CardProvider cardProvider) {
+        mList = list;
+        mCardProvider = cardProvider;
+    }
+
+    // -------------------------------------------------------------
+    // Scroll
+    // -------------------------------------------------------------
+
+    /**
+     * Called by the list when its visible range may have changed.
+     *
+     * @param firstVisible first visible position
+     * @param lastVisible  last visible position
+     * @param itemCount    number of items in the adapter
+     */
+    public void onScroll(int firstVisible, int lastVisible, int itemCount) {
+        if (firstVisible == mFirstVisible && lastVisible == mLastVisible)
+            return;
+
+        final long now = SystemClock.uptimeMillis();
+        if (mFirstVisible >= 0) {
+            final int direction = firstVisible > mFirstVisible || lastVisible > mLastVisible ? 1 : -1;
+            if (direction != mDirection) {
+                reset();
+                mDirection = direction;
+            }
+
+            final long elapsed = Math.max(1, now - mLastScrollTime);
+            final float velocity = (float) Math.abs(firstVisible - mFirstVisible) / elapsed;
+            mVelocity = (mVelocity + velocity) / 2;
+        }
+        mFirstVisible = firstVisible;
+        mLastVisible = lastVisible;
+        mLastScrollTime = now;
+
+        if (mPrefetchCount <= 0 || itemCount <= 0 || firstVisible < 0 || ThumbnailLoader.getInstance().isPaused())
+            return;
+        if (!resolveTargetSize())
+            return;
+
+        final int lookahead = Math.min(mPrefetchCount, Math.round(mVelocity * LOOKAHEAD_MILLIS));
+        final int distance = mPrefetchCount + lookahead;
+
+        if (mDirection > 0) {
+            final int from = Math.max(lastVisible + 1, mPrefetchedEdge + 1);
+            final int to = Math.min(itemCount - 1, lastVisible + distance);
+            for (int position = from; position <= to; position++) {
+                if (!prefetch(position))
+                    break;
+                mPrefetchedEdge = position;
+            }
+        } else {
+            final int from = mPrefetchedEdge >= 0 ? Math.min(firstVisible - 1, mPrefetchedEdge - 1) : firstVisible - 1;
+            final int to = Math.max(0, firstVisible - distance);
+            for (int position = from; position >= to; position--) {
+                if (!prefetch(position))
+                    break;
+                mPrefetchedEdge = position;
+            }
+        }
+    }
+
+    /**
+     * Cancels the pending prefetches and forgets the scroll history,
+     * for example when the adapter changes or the list is detached.
+     */
+    public void reset() {
+        ThumbnailLoader.getInstance().cancelPrefetch(mList);
+        mPrefetchedEdge = -1;
+        mVelocity = 0;
+    }
+
+    /**
+     * Prefetches the thumbnail of the card at the position
+     *
+     * @param position adapter position
+     * @return <code>false</code> if the loader refused the prefetch
+     */
+    protected boolean prefetch(int position) {
+        final Card card = mCardProvider.getCard(position);
+        if (card == null)
+            return true;
+        return CardThumbnailView.prefetch(card.getCardThumbnail(), mList.getResources(),
+                mTargetSize[0], mTargetSize[1], mList);
+    }
+
+    /**
+     * Uses the size of a thumbnail on screen as the target size of the prefetches
+     *
+     * @return <code>false</code> if no thumbnail has been laid out yet
+     */
+    protected boolean resolveTargetSize() {
+        for (int i = 0; i < mList.getChildCount(); i++) {
+            final View child = mList.getChildAt(i);
+            if (child instanceof CardViewWrapper) {
+                final CardThumbnailView thumbnailView = ((CardViewWrapper) child).getInternalThumbnailLayout();
+                if (thumbnailView != null && thumbnailView.getVisibility() == View.VISIBLE) {
+                    final ImageView imageView = thumbnailView.getImageView();
+                    if (imageView != null && !imageView.isLayoutRequested()
+                            && CardThumbnailView.resolveTargetSize(imageView, mTargetSize))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    /**
+     * Returns the number of cards prefetched ahead of the visible ones
+     *
+     * @return number of cards
+     */
+    public int getPrefetchCount() {
+        return mPrefetchCount;
+    }
+
+    /**
+     * Sets the number of cards prefetched ahead of the visible ones.
+     * The prefetcher can look up to twice as far while the list scrolls fast.
+     *
+     * @param prefetchCount number of cards, 0 to disable the prefetch
+     */
+    public void setPrefetchCount(int prefetchCount) {
+        mPrefetchCount = Math.max(0, prefetchCount);
+        if (mPrefetchCount == 0)
+            reset();
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.internal.thumbnail;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+
+import java.util.List;
+
+import com.android.cards.utils.BitmapPool;
+import com.android.cards.utils.CacheUtil;
+
+/**
+ * A unit of work for the {@link ThumbnailLoader}.
+ * </p>
+ * Requests with the same key are merged by the loader: only the first one is decoded
+ * and its result is delivered to every ImageView waiting for that key.
+ * </p>
+ * Requests which return the same {@link #getBatchKey()} and are submitted in the same
+ * main thread message are decoded together with {@link #decodeBatch(List)}.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public abstract class ThumbnailRequest {
+
+    /**
+     * Priority of the images displayed by visible cards
+     */
+    public static final int PRIORITY_VISIBLE = 0;
+
+    /**
+     * Priority of the images prefetched for cards which are about to scroll in
+     */
+    public static final int PRIORITY_PREFETCH = 1;
+
+    /**
+     * Priority of the error resources displayed when an image can't be loaded
+     */
+    public static final int PRIORITY_ERROR = 2;
+
+    /**
+     * Cause of a failed decode: unknown or temporary, for example a timeout, no network or out of memory.
+     * The source is tried again on the next load.
+     */
+    public static final int FAILURE_TRANSIENT = 0;
+
+    /**
+     * Cause of a failed decode: the source doesn't exist, for example an HTTP 4xx response
+     * or a custom source without bitmap
+     */
+    public static final int FAILURE_NOT_FOUND = 1;
+
+    /**
+     * Cause of a failed decode: the data of the source is not an image
+     */
+    public static final int FAILURE_UNDECODABLE = 2;
+
+    /**
+     * Key used to merge requests and to store the result in the memory cache
+     */
+    protected final String mKey;
+
+    /**
+     * Key of the source (url, resource ID, tag...), shared by all the sizes
+     */
+    protected final String mSource;
+
+    /**
+     * Flag to store the result in the memory cache
+     */
+    protected boolean mCacheable = true;
+
+    /**
+     * Config used to decode the image
+     */
+    protected Bitmap.Config mDecodeConfig = Bitmap.Config.ARGB_8888;
+
+    /**
+     * Maximum width and height of the decoded image, 0 means no limit
+     */
+    protected int mMaxDimension = 0;
+
+    /**
+     * Flag to indicate that the image has no transparency
+     */
+    protected boolean mOpaque = false;
+
+    /**
+     * Priority of the request, lower values run first
+     */
+    protected int mPriority = PRIORITY_VISIBLE;
+
+    /**
+     * Flag for the low resolution preview of a progressive load
+     */
+    protected boolean mPreview = false;
+
+    /**
+     * Transformations applied after the decode, <code>null</code> if none
+     */
+    protected List<ThumbnailTransformation> mTransformations;
+
+    /**
+     * Size of the ImageView, 0 if unknown
+     */
+    protected int mTargetWidth = 0;
+    protected int mTargetHeight = 0;
+
+    /**
+     * Area of the source to decode, in fractions of its size, <code>null</code> for the whole source
+     */
+    protected RectF mCropArea;
+
+    /**
+     * Flag to decode only the region which fills the target size, as a center crop does
+     */
+    protected boolean mCenterCrop = false;
+
+    /**
+     * Cause of the failure when {@link #decode()} returns <code>null</code>
+     */
+    protected volatile int mFailure = FAILURE_TRANSIENT;
+
+    /**
+     * Time spent reading the encoded source, in milliseconds
+     */
+    protected volatile long mFetchMillis = 0;
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param key key which identifies the image
+     */
+    public ThumbnailRequest(String key) {
+        this(key, key);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param key    key which identifies the image
+     * @param source key of the source, used to remember failures
+     */
+    public ThumbnailRequest(String key, String source) {
+        mKey = key;
+        mSource = source;
+    }
+
+    // -------------------------------------------------------------
+    // Decode
+    // -------------------------------------------------------------
+
+    /**
+     * Produces the bitmap.
+     * It is called on a worker thread of the {@link ThumbnailLoader}.
+     * </p>
+     * When the image will never be available, call {@link #setFailure(int)} before returning
+     * <code>null</code>: only those failures are remembered by the {@link com.android.cards.utils.NegativeCache}.
+     *
+     * @return the bitmap, or <code>null</code> if the image is not available
+     */
+    public abstract Bitmap decode();
+
+    /**
+     * Returns the key which groups the requests decoded together, for sources which are
+     * cheaper per image when asked for many images at once.
+     *
+     * @return the key of the batch, or <code>null</code> to decode the request alone
+     */
+    public Object getBatchKey() {
+        return null;
+    }
+
+    /**
+     * Produces the bitmaps of a batch of requests which share the batch key of this request.
+     * It is called on a worker thread of the {@link ThumbnailLoader}, on the first request of the batch.
+     * </p>
+     * The default implementation decodes the requests one by one.
+     *
+     * @param requests requests of the batch, including this one
+     * @return the bitmaps in the order of the requests, <code>null</code> items if not available
+     */
+    public Bitmap[] decodeBatch(List<ThumbnailRequest> requests) {
+        final Bitmap[] bitmaps = new Bitmap[requests.size()];
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = requests.get(i).decode();
+        }
+        return bitmaps;
+    }
+
+    /**
+     * Applies the transformations to the decoded bitmap.
+     * It is called on a worker thread of the {@link ThumbnailLoader}, after {@link #decode()}.
+     * </p>
+     * The intermediate bitmaps owned by the library are returned to the {@link BitmapPool}.
+     *
+     * @param bitmap decoded bitmap, can be <code>null</code>
+     * @return the transformed bitmap
+     */
+    public Bitmap transform(Bitmap bitmap) {
+        if (bitmap == null || mTransformations == null || mTransformations.isEmpty())
+            return bitmap;
+
+        final BitmapPool bitmapPool = CacheUtil.getBitmapPool();
+        Bitmap result = bitmap;
+        for (ThumbnailTransformation transformation : mTransformations) {
+            final Bitmap transformed = transformation.transform(result, mTargetWidth, mTargetHeight);
+            if (transformed != null && transformed != result) {
+                // A preview can stay on screen under a cross-fade: it is never reused
+                if (!mPreview)
+                    bitmapPool.markReusable(transformed);
+                bitmapPool.put(result);
+                result = transformed;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Marks a bitmap decoded for this request as opaque, so that it is drawn without blending.
+     *
+     * @param bitmap bitmap owned by the library
+     * @return the bitmap
+     */
+    protected Bitmap applyOpaque(Bitmap bitmap) {
+        if (bitmap != null && mOpaque && bitmap.hasAlpha() && bitmap.isMutable())
+            bitmap.setHasAlpha(false);
+        return bitmap;
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    /**
+     * Sets the decode options
+     *
+     * @param config       config, <code>null</code> for the default config
+     * @param maxDimension maximum width and height, 0 means no limit
+     * @param opaque       <code>true</code> if the image has no transparency
+     */
+    public void setDecodeOptions(Bitmap.Config config, int maxDimension, boolean opaque) {
+        mDecodeConfig = config != null ? config : Bitmap.Config.ARGB_8888;
+        mMaxDimension = maxDimension;
+        mOpaque = opaque;
+    }
+
+    /**
+     * Sets the transformations applied after the decode.
+     * Their signatures have to be part of the key.
+     *
+     * @param transformations transformations, <code>null</code> if none
+     */
+    public void setTransformations(List<ThumbnailTransformation> transformations) {
+        mTransformations = transformations;
+    }
+
+    public List<ThumbnailTransformation> getTransformations() {
+        return mTransformations;
+    }
+
+    /**
+     * Sets the region of the source to decode. Sources which support it decode only that region,
+     * with {@link android.graphics.BitmapRegionDecoder}.
+     *
+     * @param cropArea   area of the source in fractions of its size, <code>null</code> for the whole source
+     * @param centerCrop <code>true</code> to decode only the center of the area which fills the target size
+     */
+    public void setRegion(RectF cropArea, boolean centerCrop) {
+        mCropArea = cropArea;
+        mCenterCrop = centerCrop;
+    }
+
+    /**
+     * Indicates if only a region of the source has to be decoded
+     *
+     * @return <code>true</code> if a crop area or the center crop is set
+     */
+    public boolean hasRegion() {
+        return mCropArea != null || (mCenterCrop && mTargetWidth > 0 && mTargetHeight > 0);
+    }
+
+    /**
+     * Sets the size of the ImageView, passed to the transformations
+     *
+     * @param width  width, 0 if unknown
+     * @param height height, 0 if unknown
+     */
+    public void setTargetSize(int width, int height) {
+        mTargetWidth = width;
+        mTargetHeight = height;
+    }
+
+    public Bitmap.Config getDecodeConfig() {
+        return mDecodeConfig;
+    }
+
+    public int getMaxDimension() {
+        return mMaxDimension;
+    }
+
+    public boolean isOpaque() {
+        return mOpaque;
+    }
+
+    /**
+     * Returns the key which identifies the image
+     *
+     * @return key
+     */
+    public String getKey() {
+        return mKey;
+    }
+
+    /**
+     * Returns the priority of the request
+     *
+     * @return priority, lower values run first
+     */
+    public int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Sets the priority of the request
+     *
+     * @param priority one of {@link #PRIORITY_VISIBLE}, {@link #PRIORITY_PREFETCH}, {@link #PRIORITY_ERROR}
+     */
+    public void setPriority(int priority) {
+        mPriority = priority;
+    }
+
+    /**
+     * Indicates if the request decodes the preview of a progressive load.
+     * Previews are cheap: they run while the loader is paused, and their bitmaps
+     * are not reused by the bitmap pool so that they can be displayed during a cross-fade.
+     *
+     * @return <code>true</code> for a preview
+     */
+    public boolean isPreview() {
+        return mPreview;
+    }
+
+    /**
+     * Sets if the request decodes the preview of a progressive load
+     *
+     * @param preview <code>true</code> for a preview
+     */
+    public void setPreview(boolean preview) {
+        mPreview = preview;
+    }
+
+    /**
+     * Returns the key of the source
+     *
+     * @return key
+     */
+    public String getSource() {
+        return mSource;
+    }
+
+    /**
+     * Returns the cause of the failure when the decode returned <code>null</code>
+     *
+     * @return one of {@link #FAILURE_TRANSIENT}, {@link #FAILURE_NOT_FOUND}, {@link #FAILURE_UNDECODABLE}
+     */
+    public int getFailure() {
+        return mFailure;
+    }
+
+    /**
+     * Sets the cause of the failure. It is called by {@link #decode()}.
+     *
+     * @param failure one of {@link #FAILURE_TRANSIENT}, {@link #FAILURE_NOT_FOUND}, {@link #FAILURE_UNDECODABLE}
+     */
+    public void setFailure(int failure) {
+        mFailure = failure;
+    }
+
+    /**
+     * Indicates if the failure will happen again on a retry
+     *
+     * @return <code>true</code> if the source is missing or not an image
+     */
+    public boolean isPermanentFailure() {
+        return mFailure != FAILURE_TRANSIENT;
+    }
+
+    /**
+     * Returns the time spent reading the encoded source from the network or the disk cache.
+     * It is excluded from the decode time recorded by the {@link com.android.cards.utils.ThumbnailMetrics}.
+     *
+     * @return time in milliseconds
+     */
+    public long getFetchMillis() {
+        return mFetchMillis;
+    }
+
+    /**
+     * Adds time spent reading the encoded source. It is called by {@link #decode()}.
+     *
+     * @param millis time in milliseconds
+     */
+    public void addFetchMillis(long millis) {
+        mFetchMillis += millis;
+    }
+
+    /**
+     * Indicates if the result will be stored in the memory cache
+     *
+     * @return <code>true</code> if the result will be cached
+     */
+    public boolean isCacheable() {
+        return mCacheable;
+    }
+
+    /**
+     * Sets if the result will be stored in the memory cache
+     *
+     * @param cacheable <code>true</code> to cache the result
+     */
+    public void setCacheable(boolean cacheable) {
+        mCacheable = cacheable;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.internal.thumbnail;
+
+import android.graphics.Bitmap;
+
+/**
+ * Post-processing step applied to a thumbnail after the decode.
+ * </p>
+ * Transformations run on the worker threads of the {@link ThumbnailLoader}, and the
+ * transformed bitmap is stored in the memory cache: a rebind is a pure cache hit.
+ * See {@link ThumbnailTransformations} for the built-in transformations.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public interface ThumbnailTransformation {
+
+    /**
+     * Transforms the bitmap. Called on a worker thread.
+     * </p>
+     * The source must not be modified: return a new bitmap, or the source itself if there
+     * is nothing to do.
+     *
+     * @param source       decoded bitmap
+     * @param targetWidth  width of the ImageView, 0 if unknown
+     * @param targetHeight height of the ImageView, 0 if unknown
+     * @return the transformed bitmap, never <code>null</code>
+     */
+    Bitmap transform(Bitmap source, int targetWidth, int targetHeight);
+
+    /**
+     * Returns a signature which identifies the transformation and its parameters.
+     * It is part of the cache key of the transformed images.
+     *
+     * @return signature
+     */
+    String getSignature();
+}
@@ -0,0 +1,269 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.internal.thumbnail;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+/**
+ * Built-in {@link ThumbnailTransformation}s.
+ * </p>
+ * <b>Usage:</b>
+ * <pre><code>
+ *        thumbnail.setTransformations(ThumbnailTransformations.centerCrop(),
+ *                ThumbnailTransformations.roundedCorners(radius));
+ * </code></pre>
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public final class ThumbnailTransformations {
+
+    /**
+     * Maximum radius of the blur, in pixels
+     */
+    public static final int MAX_BLUR_RADIUS = 25;
+
+    private ThumbnailTransformations() {
+    }
+
+    // -------------------------------------------------------------
+    // Factories
+    // -------------------------------------------------------------
+
+    /**
+     * Crops the largest centered circle of the image
+     *
+     * @return transformation
+     */
+    public static ThumbnailTransformation circleCrop() {
+        return new CircleCrop();
+    }
+
+    /**
+     * Rounds the corners of the image
+     *
+     * @param radius radius of the corners, in pixels of the decoded image
+     * @return transformation
+     */
+    public static ThumbnailTransformation roundedCorners(float radius) {
+        return new RoundedCorners(radius);
+    }
+
+    /**
+     * Crops the center of the image to the aspect ratio of the ImageView.
+     * The image is never scaled up. It does nothing when the size of the ImageView is unknown,
+     * as for the custom sources.
+     *
+     * @return transformation
+     */
+    public static ThumbnailTransformation centerCrop() {
+        return new CenterCrop();
+    }
+
+    /**
+     * Blurs the image
+     *
+     * @param radius radius of the blur in pixels, between 1 and {@link #MAX_BLUR_RADIUS}
+     * @return transformation
+     */
+    public static ThumbnailTransformation blur(int radius) {
+        return new Blur(radius);
+    }
+
+    /**
+     * Indicates if the transformation is a {@link #centerCrop()}
+     *
+     * @param transformation transformation
+     * @return <code>true</code> for a center crop
+     */
+    public static boolean isCenterCrop(ThumbnailTransformation transformation) {
+        return transformation instanceof CenterCrop;
+    }
+
+    // -------------------------------------------------------------
+    // Transformations
+    // -------------------------------------------------------------
+
+    static class CircleCrop implements ThumbnailTransformation {
+
+        @Override
+        public Bitmap transform(Bitmap source, int targetWidth, int targetHeight) {
+            final int size = Math.min(source.getWidth(), source.getHeight());
+            final Bitmap result = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+
+            final Matrix matrix = new Matrix();
+            matrix.postTranslate(-(source.getWidth() - size) / 2f, -(source.getHeight() - size) / 2f);
+            final Paint paint = createShaderPaint(source, matrix);
+
+            final float radius = size / 2f;
+            new Canvas(result).drawCircle(radius, radius, radius, paint);
+            return result;
+        }
+
+        @Override
+        public String getSignature() {
+            return "circleCrop";
+        }
+    }
+
+    static class RoundedCorners implements ThumbnailTransformation {
+        private final float mRadius;
+
+        RoundedCorners(float radius) {
+            mRadius = Math.max(0, radius);
+        }
+
+        @Override
+        public Bitmap transform(Bitmap source, int targetWidth, int targetHeight) {
+            if (mRadius == 0)
+                return source;
+
+            final int width = source.getWidth();
+            final int height = source.getHeight();
+            final Bitmap result = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+
+            final Paint paint = createShaderPaint(source, null);
+            new Canvas(result).drawRoundRect(new RectF(0, 0, width, height), mRadius, mRadius, paint);
+            return result;
+        }
+
+        @Override
+        public String getSignature() {
+            return "roundedCorners(" + mRadius + ")";
+        }
+    }
+
+    static class CenterCrop implements ThumbnailTransformation {
+
+        @Override
+        public Bitmap transform(Bitmap source, int targetWidth, int targetHeight) {
+            final int width = source.getWidth();
+            final int height = source.getHeight();
+            if (targetWidth <= 0 || targetHeight <= 0)
+                return source;
+
+            // Scale which covers the target, without scaling up
+            float scale = Math.max((float) targetWidth / width, (float) targetHeight / height);
+            int resultWidth = targetWidth;
+            int resultHeight = targetHeight;
+            if (scale > 1) {
+                resultWidth = Math.max(1, Math.round(targetWidth / scale));
+                resultHeight = Math.max(1, Math.round(targetHeight / scale));
+                scale = 1;
+            }
+
+            final int cropWidth = Math.min(width, Math.round(resultWidth / scale));
+            final int cropHeight = Math.min(height, Math.round(resultHeight / scale));
+            if (cropWidth == width && cropHeight == height && resultWidth == width && resultHeight == height)
+                return source;
+
+            final int left = (width - cropWidth) / 2;
+            final int top = (height - cropHeight) / 2;
+            final Bitmap result = Bitmap.createBitmap(resultWidth, resultHeight,
+                    source.getConfig() != null ? source.getConfig() : Bitmap.Config.ARGB_8888);
+            new Canvas(result).drawBitmap(source, new Rect(left, top, left + cropWidth, top + cropHeight),
+                    new Rect(0, 0, resultWidth, resultHeight), new Paint(Paint.FILTER_BITMAP_FLAG));
+            return result;
+        }
+
+        @Override
+        public String getSignature() {
+            return "centerCrop";
+        }
+    }
+
+    static class Blur implements ThumbnailTransformation {
+        private final int mRadius;
+
+        Blur(int radius) {
+            mRadius = Math.max(1, Math.min(MAX_BLUR_RADIUS, radius));
+        }
+
+        @Override
+        public Bitmap transform(Bitmap source, int targetWidth, int targetHeight) {
+            final int width = source.getWidth();
+            final int height = source.getHeight();
+            final int[] pixels = new int[width * height];
+            final int[] buffer = new int[width * height];
+            source.getPixels(pixels, 0, width, 0, 0, width, height);
+
+            // Two box blurs approximate a gaussian blur; each pass transposes the image
+            for (int i = 0; i < 2; i++) {
+                blurPass(pixels, buffer, width, height, mRadius);
+                blurPass(buffer, pixels, height, width, mRadius);
+            }
+
+            final Bitmap result = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            result.setPixels(pixels, 0, width, 0, 0, width, height);
+            return result;
+        }
+
+        /**
+         * Blurs the rows of the image, writing them as columns of the output
+         */
+        private static void blurPass(int[] in, int[] out, int width, int height, int radius) {
+            final int div = radius * 2 + 1;
+            int inIndex = 0;
+            for (int y = 0; y < height; y++) {
+                int a = 0, r = 0, g = 0, b = 0;
+                for (int i = -radius; i <= radius; i++) {
+                    final int color = in[inIndex + Math.min(Math.max(i, 0), width - 1)];
+                    a += color >>> 24;
+                    r += (color >> 16) & 0xff;
+                    g += (color >> 8) & 0xff;
+                    b += color & 0xff;
+                }
+
+                int outIndex = y;
+                for (int x = 0; x < width; x++) {
+                    out[outIndex] = ((a / div) << 24) | ((r / div) << 16) | ((g / div) << 8) | (b / div);
+                    outIndex += height;
+
+                    final int next = in[inIndex + Math.min(x + radius + 1, width - 1)];
+                    final int previous = in[inIndex + Math.max(x - radius, 0)];
+                    a += (next >>> 24) - (previous >>> 24);
+                    r += ((next >> 16) & 0xff) - ((previous >> 16) & 0xff);
+                    g += ((next >> 8) & 0xff) - ((previous >> 8) & 0xff);
+                    b += (next & 0xff) - (previous & 0xff);
+                }
+                inIndex += width;
+            }
+        }
+
+        @Override
+        public String getSignature() {
+            return "blur(" + mRadius + ")";
+        }
+    }
+
+    private static Paint createShaderPaint(Bitmap source, Matrix matrix) {
+        final BitmapShader shader = new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        if (matrix != null)
+            shader.setLocalMatrix(matrix);
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        paint.setShader(shader);
+        return paint;
+    }
+}
@@ -31,8 +31,11 @@ import android.view.ViewGroup;
 
 import com.android.cards.R;
 import com.android.cards.internal.Card;
+import com.android.cards.internal.thumbnail.ThumbnailLoader;
+import com.android.cards.internal.thumbnail.ThumbnailPrefetcher;
 import com.android.cards.recyclerview.internal.BaseRecyclerViewAdapter;
 import com.android.cards.view.base.CardViewWrapper;
+import com.android.cards.view.helper.ExpandClipAnimator;
 
 
 /**
@@ -61,6 +64,56 @@ public class CardRecyclerView extends RecyclerView implements CardViewWrapper.On
      */
     protected BaseRecyclerViewAdapter mAdapter;
 
+    /**
+     * Scroll listener set with {@link #setOnScrollListener(OnScrollListener)}
+     */
+    protected OnScrollListener mExternalOnScrollListener;
+
+    /**
+     * Expands and collapses the cards without laying out the list on each frame
+     */
+    protected boolean mLayoutFreeExpandEnabled = true;
+
+    /**
+     * Warms the thumbnails of the cards which are about to scroll in
+     */
+    protected final ThumbnailPrefetcher mThumbnailPrefetcher = new ThumbnailPrefetcher(this,
+            new ThumbnailPrefetcher.CardProvider() {
+                @Override
+                public Card getCard(int position) {
+                    if (mAdapter != null && position < mAdapter.getItemCount())
+                        return mAdapter.getItem(position);
+                    return null;
+                }
+            });
+
+    /**
+     * Pauses thumbnail loading while the list is settling after a fling
+     * and forwards the events to the external listener.
+     */
+    protected final OnScrollListener mCardOnScrollListener = new OnScrollListener() {
+
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            if (newState == SCROLL_STATE_SETTLING) {
+                ThumbnailLoader.getInstance().pause(recyclerView);
+            } else {
+                ThumbnailLoader.getInstance().resume(recyclerView);
+            }
+
+            if (mExternalOnScrollListener != null)
+                mExternalOnScrollListener.onScrollStateChanged(recyclerView, newState);
+        }
+
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            prefetchThumbnails();
+
+            if (mExternalOnScrollListener != null)
+                mExternalOnScrollListener.onScrolled(recyclerView, dx, dy);
+        }
+    };
+
     //--------------------------------------------------------------------------
     // Custom Attrs
     //--------------------------------------------------------------------------
@@ -110,6 +163,8 @@ public class CardRecyclerView extends RecyclerView implements CardViewWrapper.On
         //Init attrs
         initAttrs(context,attrs,defStyle);
 
+        //Pause thumbnail loading during a fling
+        super.setOnScrollListener(mCardOnScrollListener);
     }
 
 
@@ -165,6 +220,7 @@ public class CardRecyclerView extends RecyclerView implements CardViewWrapper.On
         adapter.setCardRecyclerView(this);
 
         mAdapter=adapter;
+        mThumbnailPrefetcher.reset();
 
         setRecyclerListener(new RecyclerView.RecyclerListener() {
             @Override
@@ -176,6 +232,90 @@ public class CardRecyclerView extends RecyclerView implements CardViewWrapper.On
         });
     }
 
+    //--------------------------------------------------------------------------
+    // Scroll
+    //--------------------------------------------------------------------------
+
+    /**
+     * Sets a scroll listener. It receives the events through the internal listener
+     * which pauses thumbnail loading during a fling.
+     *
+     * @param listener listener
+     */
+    @Override
+    public void setOnScrollListener(OnScrollListener listener) {
+        mExternalOnScrollListener = listener;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        //A fling can be interrupted without going back to idle
+        ThumbnailLoader.getInstance().resume(this);
+        mThumbnailPrefetcher.reset();
+    }
+
+    /**
+     * Reports the visible range to the {@link ThumbnailPrefetcher}
+     */
+    protected void prefetchThumbnails() {
+        final int childCount = getChildCount();
+        if (mAdapter == null || childCount == 0)
+            return;
+
+        int firstVisible = Integer.MAX_VALUE;
+        int lastVisible = -1;
+        for (int i = 0; i < childCount; i++) {
+            final int position = getChildPosition(getChildAt(i));
+            if (position == NO_POSITION)
+                continue;
+            firstVisible = Math.min(firstVisible, position);
+            lastVisible = Math.max(lastVisible, position);
+        }
+        if (lastVisible >= 0)
+            mThumbnailPrefetcher.onScroll(firstVisible, lastVisible, mAdapter.getItemCount());
+    }
+
+    /**
+     * Returns the number of cards whose thumbnails are prefetched ahead of the visible ones
+     *
+     * @return number of cards
+     */
+    public int getThumbnailPrefetchCount() {
+        return mThumbnailPrefetcher.getPrefetchCount();
+    }
+
+    /**
+     * Sets the number of cards whose thumbnails are prefetched ahead of the visible ones
+     *
+     * @param prefetchCount number of cards, 0 to disable the prefetch
+     */
+    public void setThumbnailPrefetchCount(int prefetchCount) {
+        mThumbnailPrefetcher.setPrefetchCount(prefetchCount);
+    }
+
+    /**
+     * Indicates if the cards are expanded and collapsed without laying out the list on each frame
+     *
+     * @return <code>true</code> if enabled
+     */
+    public boolean isLayoutFreeExpandEnabled() {
+        return mLayoutFreeExpandEnabled;
+    }
+
+    /**
+     * Sets if the cards are expanded and collapsed without laying out the list on each frame.
+     * The list is laid out once at the final size, and the animation clips the card and translates
+     * the following cards. It is enabled by default and needs API 18 and a vertical layout manager:
+     * otherwise, and when the following cards would not fill the list, the height of the expand
+     * layout is animated.
+     *
+     * @param layoutFreeExpandEnabled <code>true</code> to enable
+     */
+    public void setLayoutFreeExpandEnabled(boolean layoutFreeExpandEnabled) {
+        mLayoutFreeExpandEnabled = layoutFreeExpandEnabled;
+    }
+
     //--------------------------------------------------------------------------
     // Expand and Collapse animator
     //--------------------------------------------------------------------------
@@ -203,10 +343,7 @@ public class CardRecyclerView extends RecyclerView implements CardViewWrapper.On
          * @param recyclerView     recyclerView
          */
         public static void animateCollapsing(final View expandingLayout, final CardViewWrapper cardView,final RecyclerView recyclerView) {
-            int origHeight = expandingLayout.getHeight();
-
-            ValueAnimator animator = createHeightAnimator(expandingLayout, origHeight, 0);
-            animator.addListener(new AnimatorListenerAdapter() {
+            final Animator.AnimatorListener endListener = new AnimatorListenerAdapter() {
 
                 @Override
                 public void onAnimationEnd(final Animator animator) {
@@ -220,7 +357,18 @@ public class CardRecyclerView extends RecyclerView implements CardViewWrapper.On
                     if (card.getOnCollapseAnimatorEndListener()!=null)
                         card.getOnCollapseAnimatorEndListener().onCollapseEnd(card);
                 }
-            });
+            };
+
+            //The height is animated if the following cards would not fill the list
+            if (isLayoutFree(recyclerView) && ExpandClipAnimator.animateCollapsing(expandingLayout,
+                    findDirectChild(expandingLayout, recyclerView), recyclerView, endListener)) {
+                return;
+            }
+
+            int origHeight = expandingLayout.getHeight();
+
+            ValueAnimator animator = createHeightAnimator(expandingLayout, origHeight, 0);
+            animator.addListener(endListener);
             animator.start();
         }
 
@@ -232,6 +380,47 @@ public class CardRecyclerView extends RecyclerView implements CardViewWrapper.On
          * @param recyclerView     recyclerView
          */
         public static void animateExpanding(final View expandingLayout, final CardViewWrapper cardView,final RecyclerView recyclerView) {
+            final Animator.AnimatorListener endListener = new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    super.onAnimationEnd(animation);
+                    cardView.setExpanded(true);//card.setExpanded(true);
+
+                    notifyAdapter(recyclerView,recyclerView.getLayoutManager().getPosition((View)cardView));
+
+                    Card card = cardView.getCard();
+                    if (card.getOnExpandAnimatorEndListener()!=null)
+                        card.getOnExpandAnimatorEndListener().onExpandEnd(card);
+
+                }
+            };
+
+            if (isLayoutFree(recyclerView)) {
+                //The scroll is computed once, when the card has its final size
+                ExpandClipAnimator.animateExpanding(expandingLayout, findDirectChild(expandingLayout, recyclerView),
+                        recyclerView, new ExpandClipAnimator.Scroller() {
+                            @Override
+                            public void scrollBy(int distance) {
+                                recyclerView.smoothScrollBy(0, distance);
+                            }
+                        }, endListener, new Runnable() {
+                            @Override
+                            public void run() {
+                                //The following cards would not fill the list: the height is animated
+                                animateExpandingHeight(expandingLayout, recyclerView, endListener);
+                            }
+                        });
+                return;
+            }
+
+            animateExpandingHeight(expandingLayout, recyclerView, endListener);
+        }
+
+        /**
+         * Expands the layout animating its height, with a layout of the list on each frame
+         */
+        private static void animateExpandingHeight(final View expandingLayout, final RecyclerView recyclerView,
+                                                   final Animator.AnimatorListener endListener) {
             /* Update the layout so the extra content becomes visible.*/
             expandingLayout.setVisibility(View.VISIBLE);
 
@@ -263,23 +452,20 @@ public class CardRecyclerView extends RecyclerView implements CardViewWrapper.On
                     }
                 }
             });
-            animator.addListener(new AnimatorListenerAdapter() {
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    super.onAnimationEnd(animation);
-                    cardView.setExpanded(true);//card.setExpanded(true);
-
-                    notifyAdapter(recyclerView,recyclerView.getLayoutManager().getPosition((View)cardView));
-
-                    Card card = cardView.getCard();
-                    if (card.getOnExpandAnimatorEndListener()!=null)
-                        card.getOnExpandAnimatorEndListener().onExpandEnd(card);
-
-                }
-            });
+            animator.addListener(endListener);
             animator.start();
         }
 
+        /**
+         * Indicates if the animation can run without laying out the list on each frame
+         */
+        private static boolean isLayoutFree(RecyclerView recyclerView) {
+            return recyclerView instanceof CardRecyclerView
+                    && ((CardRecyclerView) recyclerView).isLayoutFreeExpandEnabled()
+                    && recyclerView.getLayoutManager().canScrollVertically()
+                    && ExpandClipAnimator.isSupported();
+        }
+
         private static View findDirectChild(final View view, final RecyclerView recyclerView) {
             View result = view;
             View parent = (View) result.getParent();
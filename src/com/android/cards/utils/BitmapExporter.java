@@ -0,0 +1,355 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Exports views (usually cards) to image files without stalling the UI thread.
+ * </p>
+ * The view is drawn on the main thread into a bitmap taken from the {@link BitmapPool}.
+ * The bitmap is compressed straight into a buffered file on a worker thread, then it
+ * goes back to the pool. The views of a batch are drawn one at a time, each one after
+ * the previous file is written, so that a single bitmap is alive at any time.
+ * </p>
+ * Methods have to be called from the main thread. Listeners are invoked on the main thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class BitmapExporter {
+
+    private static final String TAG = "BitmapExporter";
+
+    /**
+     * Default quality of the lossy formats
+     */
+    public static final int DEFAULT_QUALITY = 90;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Listener invoked when a view has been exported
+     */
+    public interface OnExportListener {
+
+        /**
+         * @param file the image file, or <code>null</code> if the export failed
+         */
+        void onExported(File file);
+    }
+
+    /**
+     * Listener invoked when a batch of views has been exported
+     */
+    public interface OnBatchExportListener {
+
+        /**
+         * @param files the image files, in the order of the views, <code>null</code> items for the failures
+         */
+        void onExported(List<File> files);
+    }
+
+    //Singleton
+    private static BitmapExporter sInstance;
+
+    protected final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    protected ExecutorService mExecutor;
+
+    protected Bitmap.CompressFormat mFormat = Bitmap.CompressFormat.PNG;
+    protected int mQuality = DEFAULT_QUALITY;
+    protected File mDirectory;
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    protected BitmapExporter() {
+    }
+
+    public static synchronized BitmapExporter getInstance() {
+        if (sInstance == null)
+            sInstance = new BitmapExporter();
+        return sInstance;
+    }
+
+    // -------------------------------------------------------------
+    // Export
+    // -------------------------------------------------------------
+
+    /**
+     * Exports the view with the current format and quality
+     *
+     * @param view     view
+     * @param listener listener, can be <code>null</code>
+     */
+    public void export(View view, OnExportListener listener) {
+        export(view, mFormat, mQuality, listener);
+    }
+
+    /**
+     * Exports the view
+     *
+     * @param view     view
+     * @param format   format of the file
+     * @param quality  quality of the lossy formats, between 0 and 100
+     * @param listener listener, can be <code>null</code>
+     */
+    public void export(View view, Bitmap.CompressFormat format, int quality, OnExportListener listener) {
+        final Bitmap bitmap = render(view, format);
+        if (bitmap == null) {
+            if (listener != null)
+                listener.onExported(null);
+            return;
+        }
+        write(bitmap, format, quality, listener);
+    }
+
+    /**
+     * Exports the views one after the other with the current format and quality
+     *
+     * @param views    views
+     * @param listener listener, can be <code>null</code>
+     */
+    public void export(List<? extends View> views, OnBatchExportListener listener) {
+        export(views, mFormat, mQuality, listener);
+    }
+
+    /**
+     * Exports the views one after the other
+     *
+     * @param views    views
+     * @param format   format of the files
+     * @param quality  quality of the lossy formats, between 0 and 100
+     * @param listener listener, can be <code>null</code>
+     */
+    public void export(List<? extends View> views, Bitmap.CompressFormat format, int quality,
+                       OnBatchExportListener listener) {
+        exportNext(new ArrayList<View>(views), new ArrayList<File>(views.size()), format, quality, listener);
+    }
+
+    private void exportNext(final List<View> views, final List<File> files, final Bitmap.CompressFormat format,
+                            final int quality, final OnBatchExportListener listener) {
+        if (files.size() == views.size()) {
+            if (listener != null)
+                listener.onExported(files);
+            return;
+        }
+
+        // The next view is drawn once the bitmap of the previous one is back in the pool
+        export(views.get(files.size()), format, quality, new OnExportListener() {
+            @Override
+            public void onExported(File file) {
+                files.add(file);
+                exportNext(views, files, format, quality, listener);
+            }
+        });
+    }
+
+    /**
+     * Draws the view into a pooled bitmap. Views which haven't been laid out are measured
+     * with an unspecified size.
+     *
+     * @param view   view
+     * @param format format of the file: formats without alpha get a white background
+     * @return the bitmap, or <code>null</code> if the view has no size
+     */
+    protected Bitmap render(View view, Bitmap.CompressFormat format) {
+        if (view.getWidth() <= 0 && view.getHeight() <= 0) {
+            int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+            view.measure(spec, spec);
+            view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+        }
+
+        final int width = view.getWidth();
+        final int height = view.getHeight();
+        if (width <= 0 || height <= 0)
+            return null;
+
+        Bitmap bitmap = obtainBitmap(width, height);
+        bitmap.eraseColor(format == Bitmap.CompressFormat.JPEG ? Color.WHITE : Color.TRANSPARENT);
+        view.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private Bitmap obtainBitmap(int width, int height) {
+        final BitmapPool bitmapPool = CacheUtil.getBitmapPool();
+        final Bitmap pooled = bitmapPool.get(width, height, Bitmap.Config.ARGB_8888);
+        if (pooled != null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                pooled.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+                return pooled;
+            }
+            if (pooled.getWidth() == width && pooled.getHeight() == height
+                    && pooled.getConfig() == Bitmap.Config.ARGB_8888)
+                return pooled;
+            bitmapPool.put(pooled);
+        }
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmapPool.markReusable(bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Compresses the bitmap into a new file on the worker thread, then returns it to the pool
+     */
+    private void write(final Bitmap bitmap, final Bitmap.CompressFormat format, final int quality,
+                       final OnExportListener listener) {
+        final File directory = getDirectory();
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final File file = writeToFile(bitmap, format, quality, directory);
+                CacheUtil.getBitmapPool().put(bitmap);
+                if (listener == null)
+                    return;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onExported(file);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Compresses the bitmap into a new file of the directory. It does disk I/O.
+     *
+     * @param bitmap    bitmap
+     * @param format    format
+     * @param quality   quality of the lossy formats, between 0 and 100
+     * @param directory directory
+     * @return the file, or <code>null</code> if it can't be written
+     */
+    public static File writeToFile(Bitmap bitmap, Bitmap.CompressFormat format, int quality, File directory) {
+        if (bitmap == null || directory == null) return null;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Error creating directory " + directory);
+            return null;
+        }
+
+        final File file = new File(directory, System.currentTimeMillis() + "_" + System.nanoTime()
+                + getExtension(format));
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+            if (!bitmap.compress(format, quality, out))
+                throw new IOException("Unable to compress the image");
+            out.close();
+            out = null;
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving image ", e);
+            DiskCache.closeQuietly(out);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Returns the file extension of the format
+     *
+     * @param format format
+     * @return extension, with the dot
+     */
+    public static String getExtension(Bitmap.CompressFormat format) {
+        switch (format) {
+            case JPEG:
+                return ".jpg";
+            case WEBP:
+                return ".webp";
+            default:
+                return ".png";
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (mExecutor == null)
+            mExecutor = Executors.newSingleThreadExecutor();
+        return mExecutor;
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    public Bitmap.CompressFormat getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * Sets the default format of the files
+     *
+     * @param format format
+     */
+    public void setFormat(Bitmap.CompressFormat format) {
+        mFormat = format != null ? format : Bitmap.CompressFormat.PNG;
+    }
+
+    public int getQuality() {
+        return mQuality;
+    }
+
+    /**
+     * Sets the default quality of the lossy formats
+     *
+     * @param quality quality, between 0 and 100
+     */
+    public void setQuality(int quality) {
+        mQuality = Math.max(0, Math.min(100, quality));
+    }
+
+    /**
+     * Returns the directory of the files, the public pictures directory by default
+     *
+     * @return directory
+     */
+    public File getDirectory() {
+        return mDirectory != null ? mDirectory :
+                Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES);
+    }
+
+    /**
+     * Sets the directory of the files
+     *
+     * @param directory directory, <code>null</code> for the public pictures directory
+     */
+    public void setDirectory(File directory) {
+        mDirectory = directory;
+    }
+}
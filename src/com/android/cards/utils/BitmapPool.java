@@ -0,0 +1,413 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.LruCache;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Pool of bitmaps which can be reused as {@link android.graphics.BitmapFactory.Options#inBitmap}.
+ * </p>
+ * Bitmaps evicted from the memory cache are added to the pool, bucketed by size,
+ * and handed back to the next decode which fits in them. Only bitmaps decoded by the
+ * library are accepted, and a bitmap is never pooled while it is retained: while an ImageView
+ * displays it, or while its delivery to the ImageViews is pending.
+ * </p>
+ * All methods are thread safe.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class BitmapPool {
+
+    /**
+     * A pooled bitmap is reused only if it is at most this many times larger than needed
+     */
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    /**
+     * Pooled bitmaps by byte count
+     */
+    private final TreeMap<Integer, LinkedList<Bitmap>> mBuckets = new TreeMap<Integer, LinkedList<Bitmap>>();
+
+    /**
+     * Pooled bitmaps, oldest first
+     */
+    private final LinkedHashSet<Bitmap> mOrder = new LinkedHashSet<Bitmap>();
+
+    /**
+     * Bitmaps decoded by the library, which can be reused
+     */
+    private final WeakHashMap<Bitmap, Boolean> mReusable = new WeakHashMap<Bitmap, Boolean>();
+
+    /**
+     * Number of ImageViews displaying a bitmap
+     */
+    private final WeakHashMap<Bitmap, Integer> mInUse = new WeakHashMap<Bitmap, Integer>();
+
+    /**
+     * Bitmaps removed from the memory cache while displayed
+     */
+    private final WeakHashMap<Bitmap, Boolean> mPending = new WeakHashMap<Bitmap, Boolean>();
+
+    private long mMaxSize;
+    private long mSize = 0;
+    private boolean mEnabled = true;
+
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+    private int mPutCount = 0;
+    private int mEvictionCount = 0;
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param maxSize maximum number of bytes held by the pool
+     */
+    public BitmapPool(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    // -------------------------------------------------------------
+    // Pool
+    // -------------------------------------------------------------
+
+    /**
+     * Marks a bitmap decoded by the library as reusable once it leaves the memory cache.
+     *
+     * @param bitmap bitmap
+     */
+    public synchronized void markReusable(Bitmap bitmap) {
+        if (bitmap != null && bitmap.isMutable())
+            mReusable.put(bitmap, Boolean.TRUE);
+    }
+
+    /**
+     * Called when an ImageView starts to display the bitmap.
+     *
+     * @param bitmap bitmap
+     */
+    public synchronized void retain(Bitmap bitmap) {
+        if (bitmap == null) return;
+        Integer count = mInUse.get(bitmap);
+        mInUse.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Returns the bitmap cached for the key and retains it, so that it isn't pooled if the
+     * memory cache evicts it before the caller displays it. The caller has to release it.
+     *
+     * @param memoryCache memory cache
+     * @param key         key
+     * @return the bitmap, or <code>null</code> if it isn't cached
+     */
+    public synchronized Bitmap retainCached(LruCache<String, Bitmap> memoryCache, String key) {
+        if (memoryCache == null || key == null) return null;
+        // An eviction offers the bitmap to the pool only after the cache releases its lock
+        final Bitmap bitmap = memoryCache.get(key);
+        retain(bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Called when an ImageView stops to display the bitmap.
+     * A bitmap already removed from the memory cache is added to the pool.
+     *
+     * @param bitmap bitmap
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null) return;
+        Integer count = mInUse.get(bitmap);
+        if (count == null) return;
+
+        if (count > 1) {
+            mInUse.put(bitmap, count - 1);
+        } else {
+            mInUse.remove(bitmap);
+            if (mPending.remove(bitmap) != null)
+                put(bitmap);
+        }
+    }
+
+    /**
+     * Offers a bitmap removed from the memory cache to the pool.
+     *
+     * @param bitmap bitmap
+     * @return <code>true</code> if the bitmap was added to the pool
+     */
+    public synchronized boolean put(Bitmap bitmap) {
+        if (!mEnabled || bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+                || !mReusable.containsKey(bitmap) || mOrder.contains(bitmap))
+            return false;
+
+        if (mInUse.containsKey(bitmap)) {
+            mPending.put(bitmap, Boolean.TRUE);
+            return false;
+        }
+
+        final int size = getBitmapByteCount(bitmap);
+        if (size > mMaxSize)
+            return false;
+
+        LinkedList<Bitmap> bucket = mBuckets.get(size);
+        if (bucket == null) {
+            bucket = new LinkedList<Bitmap>();
+            mBuckets.put(size, bucket);
+        }
+        bucket.addLast(bitmap);
+        mOrder.add(bitmap);
+        mSize += size;
+        mPutCount++;
+
+        trimToSize(mMaxSize);
+        return true;
+    }
+
+    /**
+     * Returns a bitmap which can hold a decode of the given size, removing it from the pool.
+     *
+     * @param width  width of the decoded bitmap
+     * @param height height of the decoded bitmap
+     * @param config config of the decoded bitmap
+     * @return the bitmap, or <code>null</code> if none fits
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        if (!mEnabled || width <= 0 || height <= 0) {
+            return null;
+        }
+
+        final int required = width * height * getBytesPerPixel(config);
+        Bitmap candidate = null;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // Any bitmap large enough can be reconfigured by the decoder
+            Map.Entry<Integer, LinkedList<Bitmap>> entry = mBuckets.ceilingEntry(required);
+            if (entry != null && entry.getKey() <= required * MAX_SIZE_MULTIPLE)
+                candidate = entry.getValue().peekFirst();
+        } else {
+            // Before KitKat the bitmap has to match exactly
+            LinkedList<Bitmap> bucket = mBuckets.get(required);
+            if (bucket != null) {
+                for (Bitmap bitmap : bucket) {
+                    if (bitmap.getWidth() == width && bitmap.getHeight() == height
+                            && bitmap.getConfig() == config) {
+                        candidate = bitmap;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (candidate == null) {
+            mMissCount++;
+            return null;
+        }
+
+        removeFromPool(candidate);
+        mHitCount++;
+        return candidate;
+    }
+
+    /**
+     * Sets {@link android.graphics.BitmapFactory.Options#inBitmap} for a decode, using the
+     * bounds and the sample size already set in the options.
+     *
+     * @param options options after the bounds pass
+     * @return <code>true</code> if a bitmap from the pool was set
+     */
+    public boolean addInBitmapOptions(BitmapFactory.Options options) {
+        options.inMutable = true;
+
+        final int sampleSize = Math.max(1, options.inSampleSize);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT && sampleSize != 1)
+            return false;
+
+        // The decoder may round the sample size down to a power of two
+        final int effectiveSampleSize = Integer.highestOneBit(sampleSize);
+        final int width = (options.outWidth + effectiveSampleSize - 1) / effectiveSampleSize;
+        final int height = (options.outHeight + effectiveSampleSize - 1) / effectiveSampleSize;
+        final Bitmap.Config config = options.inPreferredConfig != null ?
+                options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+
+        final Bitmap inBitmap = get(width, height, config);
+        if (inBitmap != null) {
+            options.inBitmap = inBitmap;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the oldest bitmaps until the pool fits in the given size.
+     *
+     * @param maxSize size in bytes
+     */
+    public synchronized void trimToSize(long maxSize) {
+        Iterator<Bitmap> it = mOrder.iterator();
+        while (mSize > maxSize && it.hasNext()) {
+            Bitmap eldest = it.next();
+            it.remove();
+            removeFromBucket(eldest);
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * Removes all the bitmaps from the pool.
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void removeFromPool(Bitmap bitmap) {
+        mOrder.remove(bitmap);
+        removeFromBucket(bitmap);
+    }
+
+    private void removeFromBucket(Bitmap bitmap) {
+        final int size = getBitmapByteCount(bitmap);
+        LinkedList<Bitmap> bucket = mBuckets.get(size);
+        if (bucket != null && bucket.remove(bitmap)) {
+            mSize -= size;
+            if (bucket.isEmpty())
+                mBuckets.remove(size);
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    /**
+     * Indicates if the pool accepts and returns bitmaps
+     *
+     * @return <code>true</code> if the pool is enabled
+     */
+    public synchronized boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Enables or disables the pool. Disabling it clears the pooled bitmaps.
+     *
+     * @param enabled <code>true</code> to enable the pool
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled)
+            clear();
+    }
+
+    /**
+     * Sets the maximum number of bytes held by the pool
+     *
+     * @param maxSize size in bytes
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public synchronized long getMaxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized long size() {
+        return mSize;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized int getPutCount() {
+        return mPutCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Returns the ratio of decodes which reused a pooled bitmap
+     *
+     * @return hit rate, between 0 and 1
+     */
+    public synchronized float getHitRate() {
+        final int requests = mHitCount + mMissCount;
+        return requests == 0 ? 0f : (float) mHitCount / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("BitmapPool[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                mSize, mMaxSize, mHitCount, mMissCount, (int) (getHitRate() * 100));
+    }
+
+    // -------------------------------------------------------------
+    // Utils
+    // -------------------------------------------------------------
+
+    /**
+     * Returns the number of bytes allocated for the bitmap
+     *
+     * @param bitmap bitmap
+     * @return size in bytes
+     */
+    public static int getBitmapByteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        } else if (Build.VERSION.SDK_INT > Build.VERSION_CODES.HONEYCOMB_MR1) {
+            return bitmap.getByteCount();
+        } else {
+            return bitmap.getRowBytes() * bitmap.getHeight();
+        }
+    }
+
+    /**
+     * Returns the number of bytes used for a pixel with the config
+     *
+     * @param config config
+     * @return bytes per pixel
+     */
+    public static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+}
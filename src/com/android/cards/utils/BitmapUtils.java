@@ -22,12 +22,8 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Environment;
-import android.util.Log;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 
 /**
  * Utility class
@@ -36,39 +32,31 @@ import java.io.IOException;
  */
 public class BitmapUtils {
 
-    private static final String TAG="BitmapUtils";
-
-
     /**
-     * Creates a File from a Bitmap
+     * Creates a File from a Bitmap.
+     * It does disk I/O on the calling thread: use {@link BitmapExporter} to export a card
+     * without stalling the UI thread.
      *
      * @param bitmap to convert in a file
      *
      * @return File
      */
     public static File createFileFromBitmap(Bitmap bitmap) {
+        return createFileFromBitmap(bitmap, Bitmap.CompressFormat.PNG, 100);
+    }
 
-        if (bitmap == null) return null;
-
-        File photoFile=null;
-
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.PNG, 100, bytes);
-        File photoStorage = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES);
-        if (photoStorage!=null){
-            photoFile = new File(photoStorage, (System.currentTimeMillis()) + ".png");
-            try {
-                //f.createNewFile();
-                FileOutputStream fo = new FileOutputStream(photoFile);
-                fo.write(bytes.toByteArray());
-                fo.flush();
-                fo.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Error saving image ", e);
-            }
-        }
-
-        return photoFile;
+    /**
+     * Creates a File from a Bitmap, compressed straight into the file.
+     *
+     * @param bitmap  to convert in a file
+     * @param format  format of the file
+     * @param quality quality of the lossy formats, between 0 and 100
+     *
+     * @return File, or <code>null</code> if it can't be written
+     */
+    public static File createFileFromBitmap(Bitmap bitmap, Bitmap.CompressFormat format, int quality) {
+        return BitmapExporter.writeToFile(bitmap, format, quality,
+                Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES));
     }
 
     /**
@@ -18,27 +18,98 @@
 
 package com.android.cards.utils;
 
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
 import android.util.LruCache;
 
+import java.io.File;
+import java.io.IOException;
+
 /**
- * Utility class for memoryCache
+ * Utility class for memoryCache, bitmap pool, encoded cache, diskCache and the metrics of the thumbnails
+ * </p>
+ * The encoded cache sits beneath the memory cache: it keeps the compressed bytes of the
+ * downloaded images, which are many times smaller than the decoded bitmaps, so that a bitmap
+ * evicted from the memory cache is decoded again without disk or network access.
+ * </p>
+ * Once initialized with {@link #init(android.content.Context)}, it listens to
+ * {@link android.content.ComponentCallbacks2} and trims the memory cache, the bitmap
+ * pool and the encoded cache in proportion to the memory pressure.
  *
  * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
  */
-public class CacheUtil {
+public class CacheUtil implements ComponentCallbacks2 {
+
+    private static final String TAG = "CacheUtil";
+
+    /**
+     * Default size of the disk cache: 10MB
+     */
+    public static final long DEFAULT_DISK_CACHE_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Default directory of the disk cache, inside the application cache dir
+     */
+    public static final String DEFAULT_DISK_CACHE_DIR = "cards_thumbnails";
 
     /**
      * Memory Cache
      */
     protected LruCache<String, Bitmap> mMemoryCache;
 
+    /**
+     * Pool of bitmaps evicted from the memory cache
+     */
+    protected BitmapPool mBitmapPool;
+
+    /**
+     * Compressed bytes of the downloaded images
+     */
+    protected LruCache<String, byte[]> mEncodedCache;
+
+    /**
+     * Sources which failed to load
+     */
+    protected NegativeCache mNegativeCache;
+
+    /**
+     * Metrics of the thumbnail pipeline
+     */
+    protected ThumbnailMetrics mMetrics;
+
+    /**
+     * Disk Cache, opened lazily
+     */
+    protected volatile DiskCache mDiskCache;
+
+    protected File mDiskCacheDir;
+    protected long mDiskCacheSize = DEFAULT_DISK_CACHE_SIZE;
+    protected boolean mDiskCacheOpening = false;
+    protected boolean mDiskCacheOpenFailed = false;
+
+    /**
+     * Guards the configuration of the disk cache. It is never held during disk I/O,
+     * so the main thread can take it.
+     */
+    private final Object mDiskCacheLock = new Object();
+
+    /**
+     * Serializes the opening of the disk cache. Only the worker threads wait on it.
+     */
+    private final Object mDiskCacheOpenLock = new Object();
+
+    protected boolean mComponentCallbacksRegistered = false;
+
     //Singleton
     private static CacheUtil sInstance;
 
     protected CacheUtil(){}
 
-    public static CacheUtil getInstance() {
+    public static synchronized CacheUtil getInstance() {
         if (sInstance != null)
             return sInstance;
         else
@@ -53,4 +124,356 @@ public class CacheUtil {
         CacheUtil.getInstance().mMemoryCache=memoryCache;
     }
 
+    /**
+     * Initializes the caches, if they aren't initialized yet, and registers
+     * the callbacks for memory pressure.
+     *
+     * @param context context
+     */
+    public static void init(Context context) {
+        CacheUtil cacheUtil = CacheUtil.getInstance();
+
+        if (getMemoryCache() == null) {
+            // Get max available VM memory, exceeding this amount will throw an
+            // OutOfMemory exception. Stored in kilobytes as LruCache takes an
+            // int in its constructor.
+            final int maxMemory = (int) (Runtime.getRuntime().maxMemory() / 1024);
+
+            // Use 1/8th of the available memory for this memory cache.
+            putMemoryCache(createMemoryCache(maxMemory / 8));
+        }
+
+        // Disk cache for downloaded images. It is opened by the worker threads.
+        initDiskCache(context);
+
+        if (!cacheUtil.mComponentCallbacksRegistered && context != null) {
+            context.getApplicationContext().registerComponentCallbacks(cacheUtil);
+            cacheUtil.mComponentCallbacksRegistered = true;
+        }
+    }
+
+    /**
+     * Creates a memory cache measured in kilobytes. Evicted bitmaps are offered
+     * to the {@link BitmapPool}.
+     *
+     * @param cacheSize size in kilobytes
+     * @return memory cache
+     */
+    public static LruCache<String, Bitmap> createMemoryCache(int cacheSize) {
+        return new LruCache<String, Bitmap>(cacheSize) {
+
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                // The cache size will be measured in kilobytes rather than
+                // number of items. It counts the allocated bytes, which reflect
+                // the config and a larger reused bitmap.
+                return (BitmapPool.getBitmapByteCount(bitmap) + 1023) / 1024;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                // Evicted bitmaps are reused by the next decodes
+                if (oldValue != newValue)
+                    getBitmapPool().put(oldValue);
+            }
+        };
+    }
+
+    //--------------------------------------------------------------------------
+    // Trim
+    //--------------------------------------------------------------------------
+
+    /**
+     * Removes the least recently used bitmaps until the memory cache fits in the size.
+     * Removed bitmaps go to the bitmap pool, which is trimmed in proportion.
+     *
+     * @param maxSize size in kilobytes
+     */
+    public static void trimToSize(int maxSize) {
+        final LruCache<String, Bitmap> memoryCache = getMemoryCache();
+        if (memoryCache == null) return;
+
+        final int cacheMaxSize = memoryCache.maxSize();
+        trimLruCache(memoryCache, maxSize);
+
+        final BitmapPool bitmapPool = getBitmapPool();
+        final LruCache<String, byte[]> encodedCache = getEncodedCache();
+        if (maxSize <= 0 || cacheMaxSize <= 0) {
+            bitmapPool.clear();
+            encodedCache.evictAll();
+        } else if (maxSize < cacheMaxSize) {
+            bitmapPool.trimToSize(bitmapPool.getMaxSize() * maxSize / cacheMaxSize);
+            trimLruCache(encodedCache, (int) ((long) encodedCache.maxSize() * maxSize / cacheMaxSize));
+        }
+    }
+
+    private static <V> void trimLruCache(LruCache<String, V> cache, int maxSize) {
+        if (maxSize <= 0) {
+            cache.evictAll();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            cache.trimToSize(maxSize);
+        } else {
+            // Snapshot is ordered from least recently accessed
+            for (String key : cache.snapshot().keySet()) {
+                if (cache.size() <= maxSize)
+                    break;
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes all bitmaps from the memory cache, the bitmap pool and the encoded cache.
+     */
+    public static void evictAll() {
+        trimToSize(0);
+    }
+
+    /**
+     * Trims the caches for the memory level. A higher level never leaves the caches larger.
+     *
+     * @param level a level from {@link android.content.ComponentCallbacks2}
+     */
+    public static void trimMemory(int level) {
+        final LruCache<String, Bitmap> memoryCache = getMemoryCache();
+        if (memoryCache == null) return;
+
+        final int maxSize = memoryCache.maxSize();
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            // The process is next to be killed
+            evictAll();
+        } else if (level >= TRIM_MEMORY_MODERATE) {
+            trimToSize(maxSize / 8);
+        } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            // A higher level never trims less: in background or with the UI hidden,
+            // the caches are trimmed at least as much as when running critical
+            trimToSize(maxSize / 4);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(maxSize / 2);
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            trimToSize(maxSize * 3 / 4);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    //--------------------------------------------------------------------------
+    // Bitmap Pool
+    //--------------------------------------------------------------------------
+
+    /**
+     * Returns the pool of reusable bitmaps.
+     * It uses 1/16th of the available memory.
+     *
+     * @return the pool
+     */
+    public static BitmapPool getBitmapPool() {
+        CacheUtil cacheUtil = CacheUtil.getInstance();
+        synchronized (cacheUtil) {
+            if (cacheUtil.mBitmapPool == null)
+                cacheUtil.mBitmapPool = new BitmapPool(Runtime.getRuntime().maxMemory() / 16);
+            return cacheUtil.mBitmapPool;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Encoded Cache
+    //--------------------------------------------------------------------------
+
+    /**
+     * Returns the cache of the compressed bytes of the downloaded images, by url.
+     * It uses 1/32th of the available memory.
+     *
+     * @return the encoded cache
+     */
+    public static LruCache<String, byte[]> getEncodedCache() {
+        CacheUtil cacheUtil = CacheUtil.getInstance();
+        synchronized (cacheUtil) {
+            if (cacheUtil.mEncodedCache == null)
+                cacheUtil.mEncodedCache = createEncodedCache((int) (Runtime.getRuntime().maxMemory() / 32));
+            return cacheUtil.mEncodedCache;
+        }
+    }
+
+    /**
+     * Creates an encoded cache measured in bytes.
+     *
+     * @param cacheSize size in bytes
+     * @return encoded cache
+     */
+    public static LruCache<String, byte[]> createEncodedCache(int cacheSize) {
+        return new LruCache<String, byte[]>(cacheSize) {
+
+            @Override
+            protected int sizeOf(String key, byte[] data) {
+                return data.length;
+            }
+        };
+    }
+
+    //--------------------------------------------------------------------------
+    // Hit ratios
+    //--------------------------------------------------------------------------
+
+    /**
+     * Returns the ratio of lookups served by the memory cache
+     *
+     * @return hit rate, between 0 and 1
+     */
+    public static float getMemoryCacheHitRate() {
+        return getHitRate(getMemoryCache());
+    }
+
+    /**
+     * Returns the ratio of lookups served by the encoded cache, on a memory cache miss
+     *
+     * @return hit rate, between 0 and 1
+     */
+    public static float getEncodedCacheHitRate() {
+        return getHitRate(getEncodedCache());
+    }
+
+    private static float getHitRate(LruCache<?, ?> cache) {
+        if (cache == null) return 0f;
+        final int hits = cache.hitCount();
+        final int requests = hits + cache.missCount();
+        return requests == 0 ? 0f : (float) hits / requests;
+    }
+
+    //--------------------------------------------------------------------------
+    // Negative Cache
+    //--------------------------------------------------------------------------
+
+    /**
+     * Returns the cache of the sources which failed to load.
+     * Use it to change size and TTL, or to invalidate a source.
+     *
+     * @return the negative cache
+     */
+    public static NegativeCache getNegativeCache() {
+        CacheUtil cacheUtil = CacheUtil.getInstance();
+        synchronized (cacheUtil) {
+            if (cacheUtil.mNegativeCache == null)
+                cacheUtil.mNegativeCache = new NegativeCache(NegativeCache.DEFAULT_MAX_SIZE,
+                        NegativeCache.DEFAULT_TTL);
+            return cacheUtil.mNegativeCache;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Metrics
+    //--------------------------------------------------------------------------
+
+    /**
+     * Returns the metrics of the thumbnail pipeline: pull them with {@link ThumbnailMetrics#snapshot()}
+     * or listen to the events with {@link ThumbnailMetrics#setListener(ThumbnailMetrics.Listener)}.
+     *
+     * @return the metrics
+     */
+    public static ThumbnailMetrics getMetrics() {
+        CacheUtil cacheUtil = CacheUtil.getInstance();
+        synchronized (cacheUtil) {
+            if (cacheUtil.mMetrics == null)
+                cacheUtil.mMetrics = new ThumbnailMetrics();
+            return cacheUtil.mMetrics;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Disk Cache
+    //--------------------------------------------------------------------------
+
+    /**
+     * Configures the disk cache in the default directory, if it isn't configured yet.
+     * It doesn't do disk I/O.
+     *
+     * @param context context
+     */
+    public static void initDiskCache(Context context) {
+        CacheUtil cacheUtil = CacheUtil.getInstance();
+        synchronized (cacheUtil.mDiskCacheLock) {
+            if (cacheUtil.mDiskCacheDir != null || context == null) return;
+            File cacheDir = context.getApplicationContext().getCacheDir();
+            if (cacheDir != null)
+                cacheUtil.mDiskCacheDir = new File(cacheDir, DEFAULT_DISK_CACHE_DIR);
+        }
+    }
+
+    /**
+     * Configures the disk cache. It has to be called before the first download:
+     * a disk cache already opened isn't reconfigured, because worker threads
+     * may be writing through it.
+     * It doesn't do disk I/O.
+     *
+     * @param directory directory
+     * @param maxSize   maximum size in bytes
+     * @return <code>true</code> if the configuration is applied
+     */
+    public static boolean initDiskCache(File directory, long maxSize) {
+        CacheUtil cacheUtil = CacheUtil.getInstance();
+        synchronized (cacheUtil.mDiskCacheLock) {
+            if (cacheUtil.mDiskCache != null || cacheUtil.mDiskCacheOpening) {
+                Log.w(TAG, "Disk cache already opened, the configuration is ignored");
+                return false;
+            }
+            cacheUtil.mDiskCacheDir = directory;
+            cacheUtil.mDiskCacheSize = maxSize;
+            cacheUtil.mDiskCacheOpenFailed = false;
+            return true;
+        }
+    }
+
+    /**
+     * Returns the disk cache, opening it the first time.
+     * It can do disk I/O: don't call it on the main thread.
+     *
+     * @return the disk cache, or <code>null</code> if it isn't available
+     */
+    public static DiskCache getDiskCache() {
+        CacheUtil cacheUtil = CacheUtil.getInstance();
+        DiskCache diskCache = cacheUtil.mDiskCache;
+        if (diskCache != null)
+            return diskCache;
+
+        synchronized (cacheUtil.mDiskCacheOpenLock) {
+            final File directory;
+            final long maxSize;
+            synchronized (cacheUtil.mDiskCacheLock) {
+                if (cacheUtil.mDiskCache != null || cacheUtil.mDiskCacheDir == null
+                        || cacheUtil.mDiskCacheOpenFailed)
+                    return cacheUtil.mDiskCache;
+                directory = cacheUtil.mDiskCacheDir;
+                maxSize = cacheUtil.mDiskCacheSize;
+                cacheUtil.mDiskCacheOpening = true;
+            }
+
+            // The journal is replayed without holding the configuration lock
+            try {
+                diskCache = DiskCache.open(directory, maxSize);
+            } catch (IOException e) {
+                Log.w(TAG, "Disk cache not available", e);
+                diskCache = null;
+            }
+
+            synchronized (cacheUtil.mDiskCacheLock) {
+                cacheUtil.mDiskCache = diskCache;
+                cacheUtil.mDiskCacheOpenFailed = diskCache == null;
+                cacheUtil.mDiskCacheOpening = false;
+            }
+            return diskCache;
+        }
+    }
+
 }
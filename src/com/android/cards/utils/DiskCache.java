@@ -0,0 +1,635 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.utils;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, journaled disk cache with LRU eviction.
+ * </p>
+ * Each entry is stored in its own file, named after the hash of its key.
+ * A journal records every write, removal and read, so the LRU order survives
+ * process restarts. When the cache exceeds its size budget, the least recently
+ * used entries are deleted.
+ * </p>
+ * Readers and writers can work concurrently: writes go to a temporary file which is
+ * renamed when committed, so a reader never sees a partial entry.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class DiskCache {
+
+    private static final String TAG = "DiskCache";
+
+    static final String JOURNAL_FILE = "journal";
+    static final String JOURNAL_FILE_TMP = "journal.tmp";
+    static final String MAGIC = "com.android.cards.DiskCache";
+    static final String VERSION = "1";
+
+    private static final String CLEAN = "CLEAN";
+    private static final String REMOVE = "REMOVE";
+    private static final String READ = "READ";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+
+    private final File mDirectory;
+    private final File mJournalFile;
+    private final long mMaxSize;
+
+    /**
+     * Entry sizes by hashed key, in access order
+     */
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<String, Long>(0, 0.75f, true);
+
+    private long mSize = 0;
+    private long mSequence = 0;
+    private int mRedundantOpCount = 0;
+    private int mEvictionCount = 0;
+    private Writer mJournalWriter;
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    private DiskCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mJournalFile = new File(directory, JOURNAL_FILE);
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Opens the cache in the directory, creating it if it doesn't exist.
+     * It does disk I/O: don't call it on the main thread.
+     *
+     * @param directory directory for the cache
+     * @param maxSize   maximum number of bytes stored
+     * @return the cache
+     * @throws IOException if the directory can't be used
+     */
+    public static DiskCache open(File directory, long maxSize) throws IOException {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Unable to create cache directory " + directory);
+
+        DiskCache cache = new DiskCache(directory, maxSize);
+        if (cache.mJournalFile.exists()) {
+            try {
+                if (cache.readJournal()) {
+                    cache.mJournalWriter = new BufferedWriter(new FileWriter(cache.mJournalFile, true));
+                } else {
+                    // Appending after a cut line would corrupt the next one
+                    Log.w(TAG, "Journal ends with an incomplete line, rebuilding it " + directory);
+                    cache.rebuildJournal();
+                }
+                cache.trimToSize();
+                return cache;
+            } catch (IOException e) {
+                Log.w(TAG, "Journal is corrupt, removing cache " + directory, e);
+                cache.deleteContents();
+            }
+        }
+
+        cache.rebuildJournal();
+        return cache;
+    }
+
+    // -------------------------------------------------------------
+    // Journal
+    // -------------------------------------------------------------
+
+    /**
+     * Reads the entries of the journal.
+     * The last line can be cut by an interrupted write: if it is incomplete or malformed,
+     * the journal ends with the line before it.
+     *
+     * @return <code>false</code> if the last line was dropped and the journal has to be rebuilt
+     * @throws IOException if the journal is corrupt
+     */
+    private boolean readJournal() throws IOException {
+        final boolean terminated = endsWithNewLine(mJournalFile);
+        boolean complete = true;
+        BufferedReader reader = new BufferedReader(new FileReader(mJournalFile));
+        try {
+            if (!MAGIC.equals(reader.readLine()) || !VERSION.equals(reader.readLine()))
+                throw new IOException("Unexpected journal header");
+
+            int lineCount = 0;
+            String line = reader.readLine();
+            while (line != null) {
+                final String next = reader.readLine();
+                if (next == null && !terminated) {
+                    // Every line is written with its new line: this one was cut
+                    complete = false;
+                    break;
+                }
+                try {
+                    readJournalLine(line);
+                } catch (IOException e) {
+                    if (next != null)
+                        throw e;
+                    complete = false;
+                    break;
+                }
+                lineCount++;
+                line = next;
+            }
+            mRedundantOpCount = lineCount - mEntries.size();
+        } finally {
+            reader.close();
+        }
+
+        // Drop leftovers from interrupted writes and entries without a file
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(TMP_SUFFIX))
+                    file.delete();
+            }
+        }
+        Iterator<Map.Entry<String, Long>> it = mEntries.entrySet().iterator();
+        mSize = 0;
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (getEntryFile(entry.getKey()).exists()) {
+                mSize += entry.getValue();
+            } else {
+                it.remove();
+            }
+        }
+        return complete;
+    }
+
+    private static boolean endsWithNewLine(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final long length = raf.length();
+            if (length == 0)
+                return true;
+            raf.seek(length - 1);
+            return raf.read() == '\n';
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void readJournalLine(String line) throws IOException {
+        String[] parts = line.split(" ");
+        if (parts.length < 2)
+            throw new IOException("Unexpected journal line: " + line);
+
+        String hash = parts[1];
+        if (CLEAN.equals(parts[0]) && parts.length == 3) {
+            try {
+                mEntries.put(hash, Long.parseLong(parts[2]));
+            } catch (NumberFormatException e) {
+                throw new IOException("Unexpected journal line: " + line);
+            }
+        } else if (REMOVE.equals(parts[0])) {
+            mEntries.remove(hash);
+        } else if (READ.equals(parts[0])) {
+            // Updates the access order
+            mEntries.get(hash);
+        } else {
+            throw new IOException("Unexpected journal line: " + line);
+        }
+    }
+
+    /**
+     * Writes a new journal which contains only the current entries.
+     */
+    private void rebuildJournal() throws IOException {
+        if (mJournalWriter != null)
+            mJournalWriter.close();
+
+        File tmpJournal = new File(mDirectory, JOURNAL_FILE_TMP);
+        Writer writer = new BufferedWriter(new FileWriter(tmpJournal));
+        try {
+            writer.write(MAGIC);
+            writer.write('\n');
+            writer.write(VERSION);
+            writer.write('\n');
+            for (Map.Entry<String, Long> entry : mEntries.entrySet()) {
+                writer.write(CLEAN + ' ' + entry.getKey() + ' ' + entry.getValue() + '\n');
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (!tmpJournal.renameTo(mJournalFile))
+            throw new IOException("Unable to write journal " + mJournalFile);
+        mJournalWriter = new BufferedWriter(new FileWriter(mJournalFile, true));
+        mRedundantOpCount = 0;
+    }
+
+    private void journal(String op, String hash, long size, boolean redundant) throws IOException {
+        if (mJournalWriter == null)
+            throw new IOException("Cache is closed");
+
+        if (size >= 0)
+            mJournalWriter.write(op + ' ' + hash + ' ' + size + '\n');
+        else
+            mJournalWriter.write(op + ' ' + hash + '\n');
+        mJournalWriter.flush();
+
+        if (redundant)
+            mRedundantOpCount++;
+        if (mRedundantOpCount >= REDUNDANT_OP_COMPACT_THRESHOLD
+                && mRedundantOpCount >= mEntries.size())
+            rebuildJournal();
+    }
+
+    // -------------------------------------------------------------
+    // Read
+    // -------------------------------------------------------------
+
+    /**
+     * Returns a stream on the entry, or <code>null</code> if it isn't cached.
+     * The stream stays valid even if the entry is evicted while it is read.
+     *
+     * @param key key
+     * @return stream, to be closed by the caller
+     */
+    public synchronized InputStream getInputStream(String key) {
+        final String hash = hashKeyForDisk(key);
+        if (!mEntries.containsKey(hash))
+            return null;
+
+        try {
+            InputStream in = new FileInputStream(getEntryFile(hash));
+            mEntries.get(hash);
+            journal(READ, hash, -1, true);
+            return in;
+        } catch (FileNotFoundException e) {
+            // Removed outside the cache
+            mSize -= mEntries.remove(hash);
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Error while writing journal", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the bytes of the entry, or <code>null</code> if it isn't cached.
+     *
+     * @param key key
+     * @return bytes
+     */
+    public byte[] get(String key) {
+        InputStream in = getInputStream(key);
+        if (in == null)
+            return null;
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            copy(in, out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            Log.w(TAG, "Error while reading entry", e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Indicates if the key is cached
+     *
+     * @param key key
+     * @return <code>true</code> if the key is cached
+     */
+    public synchronized boolean contains(String key) {
+        return mEntries.containsKey(hashKeyForDisk(key));
+    }
+
+    // -------------------------------------------------------------
+    // Write
+    // -------------------------------------------------------------
+
+    /**
+     * Returns an editor to write the entry.
+     * The entry is visible to readers only after {@link Editor#commit()}.
+     *
+     * @param key key
+     * @return editor
+     */
+    public synchronized Editor edit(String key) {
+        final String hash = hashKeyForDisk(key);
+        return new Editor(hash, new File(mDirectory, hash + "." + (mSequence++) + TMP_SUFFIX));
+    }
+
+    /**
+     * Stores the bytes for the key.
+     *
+     * @param key  key
+     * @param data bytes
+     * @return <code>true</code> if the entry was written
+     */
+    public boolean put(String key, byte[] data) {
+        Editor editor = edit(key);
+        OutputStream out = null;
+        try {
+            out = editor.newOutputStream();
+            out.write(data);
+            out.close();
+            out = null;
+            editor.commit();
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Error while writing entry", e);
+            editor.abort();
+            return false;
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Removes the entry.
+     *
+     * @param key key
+     * @return <code>true</code> if an entry was removed
+     */
+    public synchronized boolean remove(String key) {
+        return removeEntry(hashKeyForDisk(key));
+    }
+
+    private boolean removeEntry(String hash) {
+        Long size = mEntries.remove(hash);
+        if (size == null)
+            return false;
+
+        getEntryFile(hash).delete();
+        mSize -= size;
+        try {
+            journal(REMOVE, hash, -1, true);
+        } catch (IOException e) {
+            Log.w(TAG, "Error while writing journal", e);
+        }
+        return true;
+    }
+
+    private synchronized void completeEdit(Editor editor, boolean success) throws IOException {
+        if (!success || !editor.mTmpFile.exists()) {
+            editor.mTmpFile.delete();
+            return;
+        }
+
+        final File entryFile = getEntryFile(editor.mHash);
+        final long length = editor.mTmpFile.length();
+        if (!editor.mTmpFile.renameTo(entryFile)) {
+            editor.mTmpFile.delete();
+            throw new IOException("Unable to commit entry " + entryFile);
+        }
+
+        Long oldSize = mEntries.put(editor.mHash, length);
+        if (oldSize != null)
+            mSize -= oldSize;
+        mSize += length;
+        journal(CLEAN, editor.mHash, length, oldSize != null);
+        trimToSize();
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache fits in its budget.
+     */
+    private void trimToSize() {
+        while (mSize > mMaxSize && !mEntries.isEmpty()) {
+            String eldest = mEntries.keySet().iterator().next();
+            removeEntry(eldest);
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public synchronized void clear() {
+        try {
+            if (mJournalWriter != null) {
+                mJournalWriter.close();
+                mJournalWriter = null;
+            }
+            deleteContents();
+            mEntries.clear();
+            mSize = 0;
+            rebuildJournal();
+        } catch (IOException e) {
+            Log.w(TAG, "Error while clearing cache", e);
+        }
+    }
+
+    /**
+     * Closes the journal. The cache can't be used after this call.
+     */
+    public synchronized void close() {
+        if (mJournalWriter != null) {
+            closeQuietly(mJournalWriter);
+            mJournalWriter = null;
+        }
+    }
+
+    private void deleteContents() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Editor
+    // -------------------------------------------------------------
+
+    /**
+     * Writes a single entry
+     */
+    public final class Editor {
+
+        private final String mHash;
+        private final File mTmpFile;
+        private OutputStream mOutputStream;
+        private boolean mDone = false;
+
+        private Editor(String hash, File tmpFile) {
+            mHash = hash;
+            mTmpFile = tmpFile;
+        }
+
+        /**
+         * Returns the stream to write the entry. Close it before committing.
+         *
+         * @return stream
+         * @throws FileNotFoundException if the temporary file can't be created
+         */
+        public OutputStream newOutputStream() throws FileNotFoundException {
+            if (mOutputStream == null)
+                mOutputStream = new FileOutputStream(mTmpFile);
+            return mOutputStream;
+        }
+
+        /**
+         * Publishes the entry to the readers.
+         *
+         * @throws IOException if the entry can't be stored
+         */
+        public void commit() throws IOException {
+            if (mDone) return;
+            mDone = true;
+            closeQuietly(mOutputStream);
+            completeEdit(this, true);
+        }
+
+        /**
+         * Discards the entry.
+         */
+        public void abort() {
+            if (mDone) return;
+            mDone = true;
+            closeQuietly(mOutputStream);
+            try {
+                completeEdit(this, false);
+            } catch (IOException e) {
+                Log.w(TAG, "Error while aborting entry", e);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Utils
+    // -------------------------------------------------------------
+
+    /**
+     * Returns the number of bytes currently stored
+     *
+     * @return size in bytes
+     */
+    public synchronized long size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the maximum number of bytes stored
+     *
+     * @return size in bytes
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the number of entries
+     *
+     * @return number of entries
+     */
+    public synchronized int getEntryCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns the number of entries evicted to fit in the budget
+     *
+     * @return number of evictions
+     */
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Returns the directory of the cache
+     *
+     * @return directory
+     */
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    private File getEntryFile(String hash) {
+        return new File(mDirectory, hash);
+    }
+
+    /**
+     * Hashes the key to obtain a valid file name
+     *
+     * @param key key
+     * @return hex string
+     */
+    public static String hashKeyForDisk(String key) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("MD5");
+            final byte[] bytes = digest.digest(key.getBytes("UTF-8"));
+            final StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return String.valueOf(key.hashCode());
+        } catch (IOException e) {
+            return String.valueOf(key.hashCode());
+        }
+    }
+
+    static long copy(InputStream in, OutputStream out) throws IOException {
+        final byte[] buffer = new byte[8 * 1024];
+        long total = 0;
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+            total += count;
+        }
+        return total;
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,667 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.utils;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Downloads the images at a url into the {@link DiskCache}.
+ * </p>
+ * A cached image is served without network access while it is fresh, according to the
+ * Cache-Control and Expires headers (or a heuristic based on Last-Modified). A stale image
+ * is revalidated with a conditional request: on 304 Not Modified the cached bytes are kept.
+ * If the revalidation fails, the stale image is served. Responses with Cache-Control: no-store
+ * are served without being stored.
+ * </p>
+ * Connections are left to the keep-alive pool of {@link HttpURLConnection}: the responses
+ * are always read to the end and closed, and the connections are never disconnected.
+ * The number of concurrent connections to each host is limited.
+ * </p>
+ * All methods are thread safe. {@link #openStream(String)} does network and disk I/O:
+ * don't call it on the main thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class HttpImageFetcher {
+
+    private static final String TAG = "HttpImageFetcher";
+
+    /**
+     * Default connect timeout, in milliseconds
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10 * 1000;
+
+    /**
+     * Default read timeout, in milliseconds
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 15 * 1000;
+
+    /**
+     * Default number of concurrent connections to the same host
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 2;
+
+    /**
+     * Freshness of a response without expiration headers, in milliseconds
+     */
+    public static final long DEFAULT_FRESHNESS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Suffix of the disk cache entries which hold the validators of an image
+     */
+    private static final String METADATA_SUFFIX = "#http";
+
+    private static final String CHARSET = "UTF-8";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    //Singleton
+    private static HttpImageFetcher sInstance;
+
+    private volatile int mConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile int mReadTimeout = DEFAULT_READ_TIMEOUT;
+    private int mMaxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    private volatile long mDefaultFreshness = DEFAULT_FRESHNESS;
+
+    /**
+     * Connection permits, by host
+     */
+    private final HashMap<String, Semaphore> mHostPermits = new HashMap<String, Semaphore>();
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    protected HttpImageFetcher() {
+    }
+
+    public static synchronized HttpImageFetcher getInstance() {
+        if (sInstance == null)
+            sInstance = new HttpImageFetcher();
+        return sInstance;
+    }
+
+    /**
+     * Replaces the fetcher used by the library, for example with a subclass which
+     * opens the connections to a local server.
+     *
+     * @param fetcher fetcher
+     */
+    public static synchronized void setInstance(HttpImageFetcher fetcher) {
+        sInstance = fetcher;
+    }
+
+    // -------------------------------------------------------------
+    // Fetch
+    // -------------------------------------------------------------
+
+    /**
+     * Opens a stream on the image at the url, going through the disk cache when it is available.
+     *
+     * @param url url
+     * @return stream, to be closed by the caller
+     * @throws IOException if the image is not available
+     */
+    public InputStream openStream(String url) throws IOException {
+        final DiskCache diskCache = CacheUtil.getDiskCache();
+        if (diskCache == null) {
+            final Response response = execute(url, null);
+            if (response.mStatus == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                response.close();
+                throw new IOException("Unexpected 304 for " + url);
+            }
+            return response.mBody;
+        }
+
+        final Metadata metadata = readMetadata(diskCache, url);
+        final boolean cached = metadata != null && diskCache.contains(url);
+        if (cached && metadata.mExpires > currentTimeMillis()) {
+            InputStream in = diskCache.getInputStream(url);
+            if (in != null) {
+                CacheUtil.getMetrics().recordDiskLookup(true);
+                return in;
+            }
+        }
+
+        Response response;
+        try {
+            response = execute(url, cached ? metadata : null);
+        } catch (IOException e) {
+            // Offline or server error: a stale image is better than none
+            InputStream in = cached ? diskCache.getInputStream(url) : null;
+            if (in != null) {
+                Log.w(TAG, "Revalidation failed, serving stale image " + url, e);
+                CacheUtil.getMetrics().recordDiskLookup(true);
+                return in;
+            }
+            CacheUtil.getMetrics().recordDiskLookup(false);
+            throw e;
+        }
+
+        // Revalidated images are served by the disk cache
+        CacheUtil.getMetrics().recordDiskLookup(response.mStatus == HttpURLConnection.HTTP_NOT_MODIFIED);
+        if (response.mStatus == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            response.close();
+            // Validators missing from a 304 keep their previous value
+            if (response.mMetadata.mEtag == null)
+                response.mMetadata.mEtag = metadata.mEtag;
+            if (response.mMetadata.mLastModified == 0)
+                response.mMetadata.mLastModified = metadata.mLastModified;
+            writeMetadata(diskCache, url, response.mMetadata);
+
+            final InputStream in = diskCache.getInputStream(url);
+            if (in != null)
+                return in;
+
+            // Evicted since the lookup
+            response = execute(url, null);
+        }
+
+        if (response.mMetadata.mNoStore) {
+            // The previous version must not be served as a stale image either
+            diskCache.remove(url);
+            diskCache.remove(url + METADATA_SUFFIX);
+            return response.mBody;
+        }
+
+        // The caller reads the body while it is written to the disk cache
+        return new CachingInputStream(diskCache, url, response);
+    }
+
+    /**
+     * Executes a request for the url, waiting for a connection permit of the host.
+     *
+     * @param url      url
+     * @param metadata validators of the cached image, <code>null</code> for an unconditional request
+     * @return response, with status 200 or 304
+     * @throws HttpStatusException if the server answers with another status
+     * @throws IOException         if the image is not available
+     */
+    protected Response execute(String url, Metadata metadata) throws IOException {
+        final URL target = new URL(url);
+        final Semaphore permits = getHostPermits(target.getHost());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection to " + target.getHost());
+        }
+
+        boolean released = false;
+        try {
+            final URLConnection connection = openConnection(target);
+            connection.setConnectTimeout(mConnectTimeout);
+            connection.setReadTimeout(mReadTimeout);
+            connection.setUseCaches(false);
+
+            if (!(connection instanceof HttpURLConnection)) {
+                // file:, jar:... have no validators
+                final Response response = new Response(HttpURLConnection.HTTP_OK,
+                        new Metadata(), new PermitInputStream(connection.getInputStream(), permits, url));
+                response.mMetadata.mExpires = Long.MAX_VALUE;
+                released = true;
+                return response;
+            }
+
+            final HttpURLConnection http = (HttpURLConnection) connection;
+            if (metadata != null) {
+                if (metadata.mEtag != null)
+                    http.setRequestProperty("If-None-Match", metadata.mEtag);
+                if (metadata.mLastModified > 0)
+                    http.setIfModifiedSince(metadata.mLastModified);
+            }
+
+            final int status = http.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_NOT_MODIFIED) {
+                // Drain the error body so that the connection goes back to the pool
+                DiskCache.closeQuietly(drain(http.getErrorStream()));
+                throw new HttpStatusException(status, url);
+            }
+
+            final Metadata responseMetadata = parseMetadata(http);
+            final InputStream body = status == HttpURLConnection.HTTP_OK ?
+                    http.getInputStream() : drain(http.getErrorStream());
+            released = true;
+            return new Response(status, responseMetadata, new PermitInputStream(body, permits, url));
+        } finally {
+            if (!released)
+                permits.release();
+        }
+    }
+
+    /**
+     * Opens the connection to the url.
+     *
+     * @param url url
+     * @return connection, not connected yet
+     * @throws IOException if the connection can't be opened
+     */
+    protected URLConnection openConnection(URL url) throws IOException {
+        return url.openConnection();
+    }
+
+    /**
+     * Returns the current time used to check the freshness, in milliseconds
+     *
+     * @return time
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private synchronized Semaphore getHostPermits(String host) {
+        final String key = host != null ? host : "";
+        Semaphore permits = mHostPermits.get(key);
+        if (permits == null) {
+            permits = new Semaphore(mMaxConnectionsPerHost, true);
+            mHostPermits.put(key, permits);
+        }
+        return permits;
+    }
+
+    private static InputStream drain(InputStream in) throws IOException {
+        if (in != null) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // Discard
+            }
+        }
+        return in;
+    }
+
+    // -------------------------------------------------------------
+    // Metadata
+    // -------------------------------------------------------------
+
+    /**
+     * Computes validators and expiration time of a response
+     *
+     * @param connection connection
+     * @return metadata
+     */
+    protected Metadata parseMetadata(HttpURLConnection connection) {
+        final long now = currentTimeMillis();
+        final Metadata metadata = new Metadata();
+        metadata.mEtag = connection.getHeaderField("ETag");
+        metadata.mLastModified = connection.getLastModified();
+
+        long maxAge = -1;
+        boolean noCache = false;
+        final String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim().toLowerCase();
+                if (directive.equals("no-cache")) {
+                    noCache = true;
+                } else if (directive.equals("no-store")) {
+                    noCache = true;
+                    metadata.mNoStore = true;
+                } else if (directive.startsWith("max-age=")) {
+                    try {
+                        maxAge = Long.parseLong(directive.substring(8).trim()) * 1000;
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+
+        if (noCache) {
+            metadata.mExpires = now;
+        } else if (maxAge >= 0) {
+            metadata.mExpires = now + maxAge;
+        } else if (connection.getExpiration() > 0) {
+            metadata.mExpires = connection.getExpiration();
+        } else if (metadata.mLastModified > 0 && metadata.mLastModified < now) {
+            // Heuristic freshness: 10% of the age of the image
+            metadata.mExpires = now + Math.min((now - metadata.mLastModified) / 10, mDefaultFreshness);
+        } else {
+            metadata.mExpires = now + mDefaultFreshness;
+        }
+        return metadata;
+    }
+
+    private static Metadata readMetadata(DiskCache diskCache, String url) {
+        final byte[] data = diskCache.get(url + METADATA_SUFFIX);
+        if (data == null)
+            return null;
+
+        try {
+            final String[] lines = new String(data, CHARSET).split("\n", -1);
+            if (lines.length < 3)
+                return null;
+            final Metadata metadata = new Metadata();
+            metadata.mEtag = lines[0].length() > 0 ? lines[0] : null;
+            metadata.mLastModified = Long.parseLong(lines[1]);
+            metadata.mExpires = Long.parseLong(lines[2]);
+            return metadata;
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void writeMetadata(DiskCache diskCache, String url, Metadata metadata) {
+        final String text = (metadata.mEtag != null ? metadata.mEtag : "") + "\n"
+                + metadata.mLastModified + "\n" + metadata.mExpires;
+        try {
+            diskCache.put(url + METADATA_SUFFIX, text.getBytes(CHARSET));
+        } catch (UnsupportedEncodingException e) {
+            Log.w(TAG, "Error while writing metadata", e);
+        }
+    }
+
+    /**
+     * Validators and expiration time of a cached image
+     */
+    protected static class Metadata {
+        protected String mEtag;
+        protected long mLastModified;
+        protected long mExpires;
+
+        /**
+         * The response must not be stored. It is never written, so it isn't persisted either.
+         */
+        protected boolean mNoStore;
+    }
+
+    /**
+     * Response with status 200 or 304
+     */
+    protected static class Response {
+        protected final int mStatus;
+        protected final Metadata mMetadata;
+        protected final InputStream mBody;
+
+        public Response(int status, Metadata metadata, InputStream body) {
+            mStatus = status;
+            mMetadata = metadata;
+            mBody = body;
+        }
+
+        void close() {
+            DiskCache.closeQuietly(mBody);
+        }
+    }
+
+    /**
+     * Thrown when the server answers with a status other than 200 or 304
+     */
+    public static class HttpStatusException extends IOException {
+        private final int mStatus;
+
+        public HttpStatusException(int status, String url) {
+            super("HTTP " + status + " for " + url);
+            mStatus = status;
+        }
+
+        /**
+         * Returns the HTTP status of the response
+         *
+         * @return status
+         */
+        public int getStatus() {
+            return mStatus;
+        }
+
+        /**
+         * Indicates if the request itself is wrong, for example 404 Not Found or 410 Gone.
+         * A retry gets the same answer.
+         *
+         * @return <code>true</code> for a 4xx status
+         */
+        public boolean isClientError() {
+            return mStatus >= 400 && mStatus < 500;
+        }
+    }
+
+    /**
+     * Writes the body of a response to the disk cache while the caller reads it.
+     * </p>
+     * The entry is committed when the stream is closed, if the whole body has been read and
+     * fits in the cache. A body closed early is read to the end, like a body copied to the cache.
+     */
+    private static class CachingInputStream extends FilterInputStream {
+        private final DiskCache mDiskCache;
+        private final String mUrl;
+        private final Metadata mMetadata;
+        private DiskCache.Editor mEditor;
+        private OutputStream mOut;
+        private long mWritten = 0;
+        private boolean mEnd = false;
+
+        CachingInputStream(DiskCache diskCache, String url, Response response) {
+            super(response.mBody);
+            mDiskCache = diskCache;
+            mUrl = url;
+            mMetadata = response.mMetadata;
+            mEditor = diskCache.edit(url);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b == -1) {
+                mEnd = true;
+            } else {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            final int read = super.read(buffer, offset, count);
+            if (read == -1) {
+                mEnd = true;
+            } else if (read > 0) {
+                write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            // Skipped bytes are missing from the entry
+            abortEntry();
+            return super.skip(count);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void write(byte[] buffer, int offset, int count) {
+            if (mEditor == null)
+                return;
+
+            mWritten += count;
+            if (mWritten > mDiskCache.getMaxSize()) {
+                // Larger than the disk cache: it would evict every entry and itself
+                abortEntry();
+                return;
+            }
+            try {
+                if (mOut == null)
+                    mOut = new BufferedOutputStream(mEditor.newOutputStream(), BUFFER_SIZE);
+                mOut.write(buffer, offset, count);
+            } catch (IOException e) {
+                Log.w(TAG, "Error while caching image " + mUrl, e);
+                abortEntry();
+            }
+        }
+
+        private void abortEntry() {
+            if (mEditor != null) {
+                DiskCache.closeQuietly(mOut);
+                mEditor.abort();
+                mEditor = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (mEditor != null && !mEnd) {
+                    // Read the rest: the connection goes back to the pool and the entry is complete
+                    final byte[] buffer = new byte[BUFFER_SIZE];
+                    try {
+                        while (read(buffer, 0, buffer.length) != -1) {
+                            // Written by read()
+                        }
+                    } catch (IOException e) {
+                        abortEntry();
+                    }
+                }
+                if (mEditor != null && mEnd && mOut != null) {
+                    try {
+                        mOut.close();
+                        mEditor.commit();
+                        mEditor = null;
+                        writeMetadata(mDiskCache, mUrl, mMetadata);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Error while caching image " + mUrl, e);
+                    }
+                }
+                abortEntry();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    /**
+     * Releases the connection permit of the host when the body is closed
+     */
+    private static class PermitInputStream extends FilterInputStream {
+        private Semaphore mPermits;
+        private final String mUrl;
+        private long mByteCount = 0;
+
+        PermitInputStream(InputStream in, Semaphore permits, String url) {
+            super(in);
+            mPermits = permits;
+            mUrl = url;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1)
+                mByteCount++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            final int read = super.read(buffer, offset, count);
+            if (read > 0)
+                mByteCount += read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (in != null)
+                    super.close();
+            } finally {
+                if (mPermits != null) {
+                    mPermits.release();
+                    mPermits = null;
+                    if (mByteCount > 0)
+                        CacheUtil.getMetrics().recordDownload(mUrl, mByteCount);
+                }
+            }
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    public int getConnectTimeout() {
+        return mConnectTimeout;
+    }
+
+    /**
+     * Sets the connect timeout
+     *
+     * @param connectTimeout timeout in milliseconds, 0 for no timeout
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        mConnectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return mReadTimeout;
+    }
+
+    /**
+     * Sets the read timeout
+     *
+     * @param readTimeout timeout in milliseconds, 0 for no timeout
+     */
+    public void setReadTimeout(int readTimeout) {
+        mReadTimeout = readTimeout;
+    }
+
+    public synchronized int getMaxConnectionsPerHost() {
+        return mMaxConnectionsPerHost;
+    }
+
+    /**
+     * Sets the number of concurrent connections to the same host.
+     * It applies to the hosts contacted from now on.
+     *
+     * @param maxConnectionsPerHost number of connections
+     */
+    public synchronized void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost < 1)
+            throw new IllegalArgumentException("maxConnectionsPerHost must be greater than 0");
+        mMaxConnectionsPerHost = maxConnectionsPerHost;
+        mHostPermits.clear();
+    }
+
+    public long getDefaultFreshness() {
+        return mDefaultFreshness;
+    }
+
+    /**
+     * Sets how long a response without expiration headers is fresh
+     *
+     * @param defaultFreshness time in milliseconds
+     */
+    public void setDefaultFreshness(long defaultFreshness) {
+        mDefaultFreshness = defaultFreshness;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.utils;
+
+import android.os.SystemClock;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the image sources which failed to load (dead links, custom sources returning
+ * <code>null</code>...), so that the error resource is displayed without retrying the source
+ * until the failure expires.
+ * </p>
+ * Only the failures which a retry would repeat are recorded: HTTP 4xx, custom sources without
+ * bitmap and data which is not an image, see {@link com.android.cards.internal.thumbnail.ThumbnailRequest#getFailure()}.
+ * </p>
+ * The least recently used failures are evicted when the cache is full.
+ * All methods are thread safe.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class NegativeCache {
+
+    /**
+     * Default maximum number of failures
+     */
+    public static final int DEFAULT_MAX_SIZE = 128;
+
+    /**
+     * Default time to live of a failure, in milliseconds
+     */
+    public static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+    /**
+     * Expiration time of the failures, by key
+     */
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+    private int mMaxSize;
+    private long mTtl;
+
+    private int mHitCount = 0;
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param maxSize maximum number of failures
+     * @param ttl     time to live of a failure, in milliseconds
+     */
+    public NegativeCache(int maxSize, long ttl) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        mMaxSize = maxSize;
+        mTtl = ttl;
+    }
+
+    // -------------------------------------------------------------
+    // Cache
+    // -------------------------------------------------------------
+
+    /**
+     * Records a failure for the key
+     *
+     * @param key key of the source
+     */
+    public synchronized void put(String key) {
+        if (key == null || mTtl <= 0) return;
+        mEntries.put(key, SystemClock.uptimeMillis() + mTtl);
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Indicates if the key failed and the failure has not expired yet
+     *
+     * @param key key of the source
+     * @return <code>true</code> if the source shouldn't be retried
+     */
+    public synchronized boolean contains(String key) {
+        if (key == null) return false;
+        final Long expiration = mEntries.get(key);
+        if (expiration == null)
+            return false;
+        if (expiration <= SystemClock.uptimeMillis()) {
+            mEntries.remove(key);
+            return false;
+        }
+        mHitCount++;
+        return true;
+    }
+
+    /**
+     * Forgets the failure of the key, so that the source is retried on the next load
+     *
+     * @param key key of the source
+     */
+    public synchronized void invalidate(String key) {
+        if (key != null)
+            mEntries.remove(key);
+    }
+
+    /**
+     * Forgets all the failures
+     */
+    public synchronized void invalidateAll() {
+        mEntries.clear();
+    }
+
+    private void trimToSize(int maxSize) {
+        Iterator<Map.Entry<String, Long>> it = mEntries.entrySet().iterator();
+        while (mEntries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Sets the maximum number of failures
+     *
+     * @param maxSize number of failures
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public synchronized long getTtl() {
+        return mTtl;
+    }
+
+    /**
+     * Sets the time to live of the failures recorded from now on.
+     * 0 disables the cache.
+     *
+     * @param ttl time in milliseconds
+     */
+    public synchronized void setTtl(long ttl) {
+        mTtl = ttl;
+        if (ttl <= 0)
+            mEntries.clear();
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.utils;
+
+import android.util.LruCache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timers of the thumbnail pipeline.
+ * </p>
+ * The loader, the fetcher and the caches record their events here. The metrics can be
+ * pulled with {@link #snapshot()}, or pushed to a {@link Listener} as the events happen.
+ * </p>
+ * All methods are thread safe.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class ThumbnailMetrics {
+
+    /**
+     * Upper bounds of the buckets of the decode latency histogram, in milliseconds.
+     * The last bucket counts the decodes slower than the last bound.
+     */
+    public static final long[] DECODE_LATENCY_BUCKETS = {4, 8, 16, 32, 64, 128, 256, 512};
+
+    /**
+     * Receives the events of the pipeline, for example to forward them to a telemetry service.
+     * The methods are called on the thread of the event: keep them short.
+     */
+    public interface Listener {
+
+        /**
+         * Called on a worker thread after an image is decoded and transformed
+         *
+         * @param key       key of the image
+         * @param millis    decode time, without the fetch
+         * @param byteCount size of the bitmap, 0 if the decode failed
+         */
+        void onDecoded(String key, long millis, int byteCount);
+
+        /**
+         * Called on a worker thread after the encoded image at a url is read
+         *
+         * @param url    url
+         * @param millis fetch time, from the network or the disk cache
+         */
+        void onFetched(String url, long millis);
+
+        /**
+         * Called on a worker thread after an image is read from the network
+         *
+         * @param url       url
+         * @param byteCount number of bytes read
+         */
+        void onDownloaded(String url, long byteCount);
+
+        /**
+         * Called on the main thread when a job is dropped before it starts
+         *
+         * @param key key of the image
+         */
+        void onCancelled(String key);
+    }
+
+    private final AtomicLongArray mDecodeLatency = new AtomicLongArray(DECODE_LATENCY_BUCKETS.length + 1);
+    private final AtomicLong mDecodeCount = new AtomicLong();
+    private final AtomicLong mDecodeFailureCount = new AtomicLong();
+    private final AtomicLong mDecodeMillis = new AtomicLong();
+    private final AtomicLong mBytesDecoded = new AtomicLong();
+    private final AtomicLong mBytesDownloaded = new AtomicLong();
+    private final AtomicLong mFetchCount = new AtomicLong();
+    private final AtomicLong mFetchMillis = new AtomicLong();
+    private final AtomicLong mMemoryHitCount = new AtomicLong();
+    private final AtomicLong mMemoryMissCount = new AtomicLong();
+    private final AtomicLong mDiskHitCount = new AtomicLong();
+    private final AtomicLong mDiskMissCount = new AtomicLong();
+    private final AtomicLong mCancelledCount = new AtomicLong();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+    private final AtomicInteger mQueueDepth = new AtomicInteger();
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+
+    private volatile Listener mListener;
+
+    // -------------------------------------------------------------
+    // Record
+    // -------------------------------------------------------------
+
+    /**
+     * Records a decode
+     *
+     * @param key       key of the image
+     * @param millis    decode time, without the time spent fetching the source
+     * @param byteCount size of the bitmap, 0 if the decode failed
+     */
+    public void recordDecode(String key, long millis, int byteCount) {
+        mDecodeCount.incrementAndGet();
+        mDecodeMillis.addAndGet(millis);
+        if (byteCount > 0)
+            mBytesDecoded.addAndGet(byteCount);
+        else
+            mDecodeFailureCount.incrementAndGet();
+
+        int bucket = 0;
+        while (bucket < DECODE_LATENCY_BUCKETS.length && millis > DECODE_LATENCY_BUCKETS[bucket])
+            bucket++;
+        mDecodeLatency.incrementAndGet(bucket);
+
+        final Listener listener = mListener;
+        if (listener != null)
+            listener.onDecoded(key, millis, byteCount);
+    }
+
+    /**
+     * Records the read of the encoded image at a url, from the network or the disk cache
+     *
+     * @param url    url
+     * @param millis fetch time
+     */
+    public void recordFetch(String url, long millis) {
+        mFetchCount.incrementAndGet();
+        mFetchMillis.addAndGet(millis);
+
+        final Listener listener = mListener;
+        if (listener != null)
+            listener.onFetched(url, millis);
+    }
+
+    /**
+     * Records the bytes read from the network
+     *
+     * @param url       url
+     * @param byteCount number of bytes
+     */
+    public void recordDownload(String url, long byteCount) {
+        mBytesDownloaded.addAndGet(byteCount);
+
+        final Listener listener = mListener;
+        if (listener != null)
+            listener.onDownloaded(url, byteCount);
+    }
+
+    /**
+     * Records the lookup of a bound thumbnail in the memory cache.
+     * The lookups made internally by the loader are not counted.
+     *
+     * @param hit <code>true</code> if the image was served by the memory cache
+     */
+    public void recordMemoryLookup(boolean hit) {
+        if (hit)
+            mMemoryHitCount.incrementAndGet();
+        else
+            mMemoryMissCount.incrementAndGet();
+    }
+
+    /**
+     * Records a lookup in the disk cache
+     *
+     * @param hit <code>true</code> if the image was served by the disk cache
+     */
+    public void recordDiskLookup(boolean hit) {
+        if (hit)
+            mDiskHitCount.incrementAndGet();
+        else
+            mDiskMissCount.incrementAndGet();
+    }
+
+    /**
+     * Records a job dropped before it started
+     *
+     * @param key key of the image
+     */
+    public void recordCancel(String key) {
+        mCancelledCount.incrementAndGet();
+
+        final Listener listener = mListener;
+        if (listener != null)
+            listener.onCancelled(key);
+    }
+
+    /**
+     * Records a request merged with a job already in flight
+     */
+    public void recordCoalesced() {
+        mCoalescedCount.incrementAndGet();
+    }
+
+    /**
+     * Records the number of jobs waiting to run
+     *
+     * @param depth number of jobs queued or parked
+     */
+    public void recordQueueDepth(int depth) {
+        mQueueDepth.set(depth);
+        int max;
+        do {
+            max = mMaxQueueDepth.get();
+        } while (depth > max && !mMaxQueueDepth.compareAndSet(max, depth));
+    }
+
+    /**
+     * Resets the counters. The statistics of the caches are not reset.
+     */
+    public void reset() {
+        for (int i = 0; i < mDecodeLatency.length(); i++) {
+            mDecodeLatency.set(i, 0);
+        }
+        mDecodeCount.set(0);
+        mDecodeFailureCount.set(0);
+        mDecodeMillis.set(0);
+        mBytesDecoded.set(0);
+        mBytesDownloaded.set(0);
+        mFetchCount.set(0);
+        mFetchMillis.set(0);
+        mMemoryHitCount.set(0);
+        mMemoryMissCount.set(0);
+        mDiskHitCount.set(0);
+        mDiskMissCount.set(0);
+        mCancelledCount.set(0);
+        mCoalescedCount.set(0);
+        mMaxQueueDepth.set(mQueueDepth.get());
+    }
+
+    // -------------------------------------------------------------
+    // Snapshot
+    // -------------------------------------------------------------
+
+    /**
+     * Returns the current value of the metrics, together with the statistics of the caches
+     *
+     * @return snapshot
+     */
+    public Snapshot snapshot() {
+        final Snapshot snapshot = new Snapshot();
+        snapshot.mDecodeLatency = new long[mDecodeLatency.length()];
+        for (int i = 0; i < snapshot.mDecodeLatency.length; i++) {
+            snapshot.mDecodeLatency[i] = mDecodeLatency.get(i);
+        }
+        snapshot.mDecodeCount = mDecodeCount.get();
+        snapshot.mDecodeFailureCount = mDecodeFailureCount.get();
+        snapshot.mDecodeMillis = mDecodeMillis.get();
+        snapshot.mBytesDecoded = mBytesDecoded.get();
+        snapshot.mBytesDownloaded = mBytesDownloaded.get();
+        snapshot.mFetchCount = mFetchCount.get();
+        snapshot.mFetchMillis = mFetchMillis.get();
+        snapshot.mMemoryHitCount = mMemoryHitCount.get();
+        snapshot.mMemoryMissCount = mMemoryMissCount.get();
+        snapshot.mDiskHitCount = mDiskHitCount.get();
+        snapshot.mDiskMissCount = mDiskMissCount.get();
+        snapshot.mCancelledCount = mCancelledCount.get();
+        snapshot.mCoalescedCount = mCoalescedCount.get();
+        snapshot.mQueueDepth = mQueueDepth.get();
+        snapshot.mMaxQueueDepth = mMaxQueueDepth.get();
+
+        final LruCache<String, ?> memoryCache = CacheUtil.getMemoryCache();
+        if (memoryCache != null)
+            snapshot.mMemoryEvictionCount = memoryCache.evictionCount();
+        final LruCache<String, byte[]> encodedCache = CacheUtil.getEncodedCache();
+        snapshot.mEncodedHitCount = encodedCache.hitCount();
+        snapshot.mEncodedMissCount = encodedCache.missCount();
+        snapshot.mEncodedEvictionCount = encodedCache.evictionCount();
+        snapshot.mPoolEvictionCount = CacheUtil.getBitmapPool().getEvictionCount();
+        snapshot.mNegativeHitCount = CacheUtil.getNegativeCache().getHitCount();
+        // Don't open the disk cache just to read its statistics
+        final DiskCache diskCache = CacheUtil.getInstance().mDiskCache;
+        if (diskCache != null)
+            snapshot.mDiskEvictionCount = diskCache.getEvictionCount();
+        return snapshot;
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    public Listener getListener() {
+        return mListener;
+    }
+
+    /**
+     * Sets the listener of the events
+     *
+     * @param listener listener, <code>null</code> to remove it
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    // -------------------------------------------------------------
+    // Snapshot value
+    // -------------------------------------------------------------
+
+    /**
+     * Immutable value of the metrics at a point in time
+     */
+    public static class Snapshot {
+
+        private long[] mDecodeLatency;
+        private long mDecodeCount;
+        private long mDecodeFailureCount;
+        private long mDecodeMillis;
+        private long mBytesDecoded;
+        private long mBytesDownloaded;
+        private long mFetchCount;
+        private long mFetchMillis;
+        private long mDiskHitCount;
+        private long mDiskMissCount;
+        private long mCancelledCount;
+        private long mCoalescedCount;
+        private int mQueueDepth;
+        private int mMaxQueueDepth;
+        private long mMemoryHitCount;
+        private long mMemoryMissCount;
+        private int mMemoryEvictionCount;
+        private int mEncodedHitCount;
+        private int mEncodedMissCount;
+        private int mEncodedEvictionCount;
+        private int mPoolEvictionCount;
+        private int mDiskEvictionCount;
+        private int mNegativeHitCount;
+
+        Snapshot() {
+        }
+
+        /**
+         * Returns the decode latency histogram
+         *
+         * @return number of decodes in each bucket of {@link #DECODE_LATENCY_BUCKETS}, plus the slower ones
+         */
+        public long[] getDecodeLatencyHistogram() {
+            return mDecodeLatency.clone();
+        }
+
+        public long getDecodeCount() {
+            return mDecodeCount;
+        }
+
+        public long getDecodeFailureCount() {
+            return mDecodeFailureCount;
+        }
+
+        /**
+         * Returns the average decode time
+         *
+         * @return time in milliseconds
+         */
+        public float getAverageDecodeMillis() {
+            return mDecodeCount == 0 ? 0f : (float) mDecodeMillis / mDecodeCount;
+        }
+
+        public long getBytesDecoded() {
+            return mBytesDecoded;
+        }
+
+        public long getBytesDownloaded() {
+            return mBytesDownloaded;
+        }
+
+        public long getFetchCount() {
+            return mFetchCount;
+        }
+
+        /**
+         * Returns the average time spent reading an encoded image from the network or the disk cache
+         *
+         * @return time in milliseconds
+         */
+        public float getAverageFetchMillis() {
+            return mFetchCount == 0 ? 0f : (float) mFetchMillis / mFetchCount;
+        }
+
+        public long getCancelledCount() {
+            return mCancelledCount;
+        }
+
+        public long getCoalescedCount() {
+            return mCoalescedCount;
+        }
+
+        /**
+         * Returns the number of jobs waiting to run when they were last counted
+         *
+         * @return queued and parked jobs
+         */
+        public int getQueueDepth() {
+            return mQueueDepth;
+        }
+
+        public int getMaxQueueDepth() {
+            return mMaxQueueDepth;
+        }
+
+        public float getMemoryHitRate() {
+            return getRate(mMemoryHitCount, mMemoryMissCount);
+        }
+
+        public float getEncodedHitRate() {
+            return getRate(mEncodedHitCount, mEncodedMissCount);
+        }
+
+        public float getDiskHitRate() {
+            return getRate(mDiskHitCount, mDiskMissCount);
+        }
+
+        public int getMemoryEvictionCount() {
+            return mMemoryEvictionCount;
+        }
+
+        public int getEncodedEvictionCount() {
+            return mEncodedEvictionCount;
+        }
+
+        public int getPoolEvictionCount() {
+            return mPoolEvictionCount;
+        }
+
+        public int getDiskEvictionCount() {
+            return mDiskEvictionCount;
+        }
+
+        public int getNegativeHitCount() {
+            return mNegativeHitCount;
+        }
+
+        private static float getRate(long hits, long misses) {
+            final long requests = hits + misses;
+            return requests == 0 ? 0f : (float) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "ThumbnailMetrics[memoryHitRate=" + getMemoryHitRate()
+                    + ", encodedHitRate=" + getEncodedHitRate()
+                    + ", diskHitRate=" + getDiskHitRate()
+                    + ", decodes=" + mDecodeCount
+                    + ", failures=" + mDecodeFailureCount
+                    + ", averageDecodeMillis=" + getAverageDecodeMillis()
+                    + ", bytesDecoded=" + mBytesDecoded
+                    + ", bytesDownloaded=" + mBytesDownloaded
+                    + ", fetches=" + mFetchCount
+                    + ", averageFetchMillis=" + getAverageFetchMillis()
+                    + ", cancelled=" + mCancelledCount
+                    + ", coalesced=" + mCoalescedCount
+                    + ", queueDepth=" + mQueueDepth
+                    + ", maxQueueDepth=" + mMaxQueueDepth
+                    + ", memoryEvictions=" + mMemoryEvictionCount
+                    + ", encodedEvictions=" + mEncodedEvictionCount
+                    + ", poolEvictions=" + mPoolEvictionCount
+                    + ", diskEvictions=" + mDiskEvictionCount + "]";
+        }
+    }
+}
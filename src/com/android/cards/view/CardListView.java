@@ -36,7 +36,10 @@ import com.android.cards.R;
 import com.android.cards.internal.Card;
 import com.android.cards.internal.CardArrayAdapter;
 import com.android.cards.internal.CardCursorAdapter;
+import com.android.cards.internal.thumbnail.ThumbnailLoader;
+import com.android.cards.internal.thumbnail.ThumbnailPrefetcher;
 import com.android.cards.view.base.CardViewWrapper;
+import com.android.cards.view.helper.ExpandClipAnimator;
 import com.android.cards.view.listener.SwipeOnScrollListener;
 
 /**
@@ -83,11 +86,62 @@ public class CardListView extends ListView implements CardViewWrapper.OnExpandLi
      */
     protected SwipeOnScrollListener mOnScrollListener;
 
+    /**
+     * Scroll listener set with {@link #setOnScrollListener(OnScrollListener)}
+     */
+    protected OnScrollListener mExternalOnScrollListener;
+
+    /**
+     * Forwards the events to the {@link SwipeOnScrollListener}, which pauses thumbnail loading
+     * during a fling, and to the external listener.
+     */
+    protected final OnScrollListener mCardOnScrollListener = new OnScrollListener() {
+
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+            if (mOnScrollListener != null)
+                mOnScrollListener.onScrollStateChanged(view, scrollState);
+
+            if (mExternalOnScrollListener != null)
+                mExternalOnScrollListener.onScrollStateChanged(view, scrollState);
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+            if (mOnScrollListener != null)
+                mOnScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+
+            if (mExternalOnScrollListener != null)
+                mExternalOnScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+        }
+    };
+
     /**
      * Custom gesture listener to be used with a CardListView and cards with swipe action
      */
     protected ScaleGestureDetector mGestureDetector;
 
+    /**
+     * Expands and collapses the cards without laying out the list on each frame
+     */
+    protected boolean mLayoutFreeExpandEnabled = true;
+
+    /**
+     * Warms the thumbnails of the cards which are about to scroll in
+     */
+    protected final ThumbnailPrefetcher mThumbnailPrefetcher = new ThumbnailPrefetcher(this,
+            new ThumbnailPrefetcher.CardProvider() {
+                @Override
+                public Card getCard(int position) {
+                    final ListAdapter adapter = getAdapter();
+                    if (adapter != null && position < adapter.getCount()) {
+                        final Object item = adapter.getItem(position);
+                        if (item instanceof Card)
+                            return (Card) item;
+                    }
+                    return null;
+                }
+            });
 
     //--------------------------------------------------------------------------
     // Custom Attrs
@@ -136,6 +190,9 @@ public class CardListView extends ListView implements CardViewWrapper.OnExpandLi
         //Set divider to 0dp
         setDividerHeight(0);
 
+        //Pause thumbnail loading during a fling
+        mOnScrollListener = new SwipeOnScrollListener();
+        super.setOnScrollListener(mCardOnScrollListener);
     }
 
 
@@ -179,6 +236,7 @@ public class CardListView extends ListView implements CardViewWrapper.OnExpandLi
         }else {
             Log.w(TAG,"You are using a generic adapter. Pay attention: your adapter has to call cardArrayAdapter#getView method" );
             super.setAdapter(adapter);
+            mThumbnailPrefetcher.reset();
         }
     }
 
@@ -195,6 +253,7 @@ public class CardListView extends ListView implements CardViewWrapper.OnExpandLi
 
         adapter.setCardListView(this);
         mAdapter=adapter;
+        mThumbnailPrefetcher.reset();
     }
 
     /**
@@ -210,6 +269,7 @@ public class CardListView extends ListView implements CardViewWrapper.OnExpandLi
 
         adapter.setCardListView(this);
         mCursorAdapter=adapter;
+        mThumbnailPrefetcher.reset();
     }
 
     /**
@@ -252,13 +312,73 @@ public class CardListView extends ListView implements CardViewWrapper.OnExpandLi
     }
 
     /**
-     * Overrides the set on scroll listener method and registers local reference
+     * Sets a scroll listener. It receives the events through the internal listener
+     * which pauses thumbnail loading during a fling.
+     * A {@link SwipeOnScrollListener} replaces the local one.
+     *
+     * @param listener listener
      */
     @Override
-    public void setOnScrollListener( OnScrollListener mOnScrollListener ) {
-        super.setOnScrollListener( mOnScrollListener );
-        if (mOnScrollListener instanceof SwipeOnScrollListener)
-            this.mOnScrollListener = (SwipeOnScrollListener)mOnScrollListener;
+    public void setOnScrollListener(OnScrollListener listener) {
+        if (listener instanceof SwipeOnScrollListener)
+            mOnScrollListener = (SwipeOnScrollListener) listener;
+        else
+            mExternalOnScrollListener = listener;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        //A fling can be interrupted without going back to idle
+        ThumbnailLoader.getInstance().resume(this);
+        mThumbnailPrefetcher.reset();
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        //AbsListView calls it whenever the visible items move
+        if (mThumbnailPrefetcher != null)
+            mThumbnailPrefetcher.onScroll(getFirstVisiblePosition(), getLastVisiblePosition(), getCount());
+    }
+
+    /**
+     * Returns the number of cards whose thumbnails are prefetched ahead of the visible ones
+     *
+     * @return number of cards
+     */
+    public int getThumbnailPrefetchCount() {
+        return mThumbnailPrefetcher.getPrefetchCount();
+    }
+
+    /**
+     * Sets the number of cards whose thumbnails are prefetched ahead of the visible ones
+     *
+     * @param prefetchCount number of cards, 0 to disable the prefetch
+     */
+    public void setThumbnailPrefetchCount(int prefetchCount) {
+        mThumbnailPrefetcher.setPrefetchCount(prefetchCount);
+    }
+
+    /**
+     * Indicates if the cards are expanded and collapsed without laying out the list on each frame
+     *
+     * @return <code>true</code> if enabled
+     */
+    public boolean isLayoutFreeExpandEnabled() {
+        return mLayoutFreeExpandEnabled;
+    }
+
+    /**
+     * Sets if the cards are expanded and collapsed without laying out the list on each frame.
+     * The list is laid out once at the final size, and the animation clips the card and translates
+     * the following cards. It is enabled by default and needs API 18: on older devices, and when
+     * the following cards would not fill the list, the height of the expand layout is animated.
+     *
+     * @param layoutFreeExpandEnabled <code>true</code> to enable
+     */
+    public void setLayoutFreeExpandEnabled(boolean layoutFreeExpandEnabled) {
+        mLayoutFreeExpandEnabled = layoutFreeExpandEnabled;
     }
 
     /**
@@ -324,10 +444,7 @@ public class CardListView extends ListView implements CardViewWrapper.OnExpandLi
          * @param listView         listView
          */
         public static void animateCollapsing(final View expandingLayout, final CardViewWrapper cardView,final AbsListView listView) {
-            int origHeight = expandingLayout.getHeight();
-
-            ValueAnimator animator = createHeightAnimator(expandingLayout, origHeight, 0);
-            animator.addListener(new AnimatorListenerAdapter() {
+            final Animator.AnimatorListener endListener = new AnimatorListenerAdapter() {
 
                 @Override
                 public void onAnimationEnd(final Animator animator) {
@@ -341,7 +458,18 @@ public class CardListView extends ListView implements CardViewWrapper.OnExpandLi
                     if (card.getOnCollapseAnimatorEndListener()!=null)
                         card.getOnCollapseAnimatorEndListener().onCollapseEnd(card);
                 }
-            });
+            };
+
+            //The height is animated if the following cards would not fill the list
+            if (isLayoutFree(listView) && ExpandClipAnimator.animateCollapsing(expandingLayout,
+                    findDirectChild(expandingLayout, listView), listView, endListener)) {
+                return;
+            }
+
+            int origHeight = expandingLayout.getHeight();
+
+            ValueAnimator animator = createHeightAnimator(expandingLayout, origHeight, 0);
+            animator.addListener(endListener);
             animator.start();
         }
 
@@ -353,6 +481,47 @@ public class CardListView extends ListView implements CardViewWrapper.OnExpandLi
          * @param listView         listView
          */
         public static void animateExpanding(final View expandingLayout, final CardViewWrapper cardView,final AbsListView listView) {
+            final Animator.AnimatorListener endListener = new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    super.onAnimationEnd(animation);
+                    cardView.setExpanded(true);//card.setExpanded(true);
+
+                    notifyAdapter(listView);
+
+                    Card card = cardView.getCard();
+                    if (card.getOnExpandAnimatorEndListener()!=null)
+                        card.getOnExpandAnimatorEndListener().onExpandEnd(card);
+
+                }
+            };
+
+            if (isLayoutFree(listView)) {
+                //The scroll is computed once, when the card has its final size
+                ExpandClipAnimator.animateExpanding(expandingLayout, findDirectChild(expandingLayout, listView),
+                        listView, new ExpandClipAnimator.Scroller() {
+                            @Override
+                            public void scrollBy(int distance) {
+                                listView.smoothScrollBy(distance, 0);
+                            }
+                        }, endListener, new Runnable() {
+                            @Override
+                            public void run() {
+                                //The following cards would not fill the list: the height is animated
+                                animateExpandingHeight(expandingLayout, listView, endListener);
+                            }
+                        });
+                return;
+            }
+
+            animateExpandingHeight(expandingLayout, listView, endListener);
+        }
+
+        /**
+         * Expands the layout animating its height, with a layout of the list on each frame
+         */
+        private static void animateExpandingHeight(final View expandingLayout, final AbsListView listView,
+                                                   final Animator.AnimatorListener endListener) {
             /* Update the layout so the extra content becomes visible.*/
             expandingLayout.setVisibility(View.VISIBLE);
 
@@ -378,23 +547,18 @@ public class CardListView extends ListView implements CardViewWrapper.OnExpandLi
                     }
                 }
             });
-            animator.addListener(new AnimatorListenerAdapter() {
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    super.onAnimationEnd(animation);
-                    cardView.setExpanded(true);//card.setExpanded(true);
-
-                    notifyAdapter(listView);
-
-                    Card card = cardView.getCard();
-                    if (card.getOnExpandAnimatorEndListener()!=null)
-                        card.getOnExpandAnimatorEndListener().onExpandEnd(card);
-
-                }
-            });
+            animator.addListener(endListener);
             animator.start();
         }
 
+        /**
+         * Indicates if the animation can run without laying out the list on each frame
+         */
+        private static boolean isLayoutFree(AbsListView listView) {
+            return listView instanceof CardListView && ((CardListView) listView).isLayoutFreeExpandEnabled()
+                    && ExpandClipAnimator.isSupported();
+        }
+
         private static View findDirectChild(final View view, final AbsListView listView) {
             View result = view;
             View parent = (View) result.getParent();
@@ -38,7 +38,6 @@ import android.view.ViewAnimationUtils;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.view.ViewParent;
-import android.view.ViewTreeObserver;
 import android.view.animation.PathInterpolator;
 import android.widget.FrameLayout;
 
@@ -50,9 +49,11 @@ import com.android.cards.internal.CardExpand;
 import com.android.cards.internal.CardHeader;
 import com.android.cards.internal.CardThumbnail;
 import com.android.cards.internal.ViewToClickToExpand;
+import com.android.cards.utils.BitmapExporter;
 import com.android.cards.view.base.CardViewWrapper;
 import com.android.cards.view.component.CardHeaderView;
 import com.android.cards.view.component.CardThumbnailView;
+import com.android.cards.view.helper.ExpandHeightCache;
 import com.android.cards.view.listener.SwipeDismissViewTouchListener;
 
 /**
@@ -166,6 +167,14 @@ public class CardView extends BaseCardView implements CardViewWrapper {
     /** Animator to expand/collapse */
     protected Animator mExpandAnimator;
 
+    /**
+     * Expand/collapse listeners and helper, created once for each view and pointed at the current card
+     */
+    private ViewToClickToExpand mHeaderViewToClickToExpand;
+    private TitleViewOnClickListener mExpandClickListener;
+    private TitleViewOnLongClickListener mExpandLongClickListener;
+    private ExpandContainerHelper mExpandContainerHelper;
+
     /**
      * Listener invoked when Expand Animator starts
      * It is used internally
@@ -174,6 +183,130 @@ public class CardView extends BaseCardView implements CardViewWrapper {
 
     private boolean mOptionsShown = false;
     private int mUpX, mUpY;
+    private final int[] mLocationOnScreen = new int[2];
+
+    /**
+     * Areas which can have a partial click listener
+     */
+    private static final int[] CLICK_AREAS = {Card.CLICK_LISTENER_ALL_VIEW, Card.CLICK_LISTENER_THUMBNAIL_VIEW,
+            Card.CLICK_LISTENER_HEADER_VIEW, Card.CLICK_LISTENER_EXPAND_VIEW, Card.CLICK_LISTENER_CONTENT_VIEW};
+
+    /**
+     * Swipe listeners, created once for each view and pointed at the current card
+     */
+    private final HashMap<View, SwipeDismissViewTouchListener> mSwipeListeners =
+            new HashMap<View, SwipeDismissViewTouchListener>();
+
+    //--------------------------------------------------------------------------
+    // Bind state
+    //--------------------------------------------------------------------------
+
+    // State applied by the previous binds: a card bound again with the same values
+    // doesn't touch the views, which avoids invalidations and layout passes.
+
+    /**
+     * Background resource id applied to the main layout, 0 if none
+     */
+    private int mAppliedBackgroundResourceId;
+
+    /**
+     * Background drawable applied to the main layout, <code>null</code> if none
+     */
+    private Drawable mAppliedBackgroundResource;
+
+    /**
+     * Bit mask of the click areas (1 << area) which already have the card selector
+     */
+    private int mSelectorAreas;
+
+    //--------------------------------------------------------------------------
+    // Listeners
+    //--------------------------------------------------------------------------
+
+    // The listeners are owned by the CardView and refer to the current card,
+    // so that binding a recycled view doesn't allocate them again.
+
+    private final OnClickListener mCardClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            if (mCard != null && mCard.getOnClickListener() != null) {
+                mCard.getOnClickListener().onClick(mCard, v);
+            }
+        }
+    };
+
+    private final OnClickListener mPartialClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            if (mCard == null || mCard.getMultipleOnClickListener() == null) return;
+            final Card.OnCardClickListener listener = mCard.getMultipleOnClickListener().get(getClickArea(v));
+            //Callback to card listener
+            if (listener != null)
+                listener.onClick(mCard, v);
+        }
+    };
+
+    private final OnLongClickListener mCardLongClickListener = new OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            if (mCard != null && mCard.getOnLongClickListener() != null)
+                return mCard.getOnLongClickListener().onLongClick(mCard, v);
+            return false;
+        }
+    };
+
+    private final OnLongClickListener mPartialLongClickListener = new OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            if (mCard == null || mCard.getMultipleOnLongClickListener() == null) return false;
+            final Card.OnLongCardClickListener listener = mCard.getMultipleOnLongClickListener().get(getClickArea(v));
+            //Callback to card listener
+            if (listener != null)
+                return listener.onLongClick(mCard, v);
+            return false;
+        }
+    };
+
+    private final SwipeDismissViewTouchListener.DismissCallbacks mDismissCallbacks =
+            new SwipeDismissViewTouchListener.DismissCallbacks() {
+        @Override
+        public boolean canDismiss(Card card) {
+            return card.isSwipeable();
+        }
+
+        @Override
+        public void onDismiss(CardViewWrapper cardView, Card card) {
+            final ViewGroup vg = (ViewGroup)(cardView.getCardParent());
+            if (vg!=null){
+                vg.removeView(cardView.getCardView());
+                card.onSwipeCard();
+            }
+        }
+    };
+
+    private final OnTouchListener mRevealTouchListener = new OnTouchListener() {
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            mUpX = (int) event.getRawX();
+            mUpY = (int) event.getRawY();
+            return false;
+        }
+    };
+
+    private final OnLongClickListener mRevealLongClickListener = new OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            getLocationOnScreen(mLocationOnScreen);
+            int x = mUpX - mLocationOnScreen[0];
+            int y = mUpY - mLocationOnScreen[1];
+            if (isOptionsVisible()) {
+                hideOptions(x, y);
+            } else {
+                showOptions(x, y);
+            }
+            return true;
+        }
+    };
 
     //--------------------------------------------------------------------------
     // Constructor
@@ -255,13 +388,20 @@ public class CardView extends BaseCardView implements CardViewWrapper {
     }
 
     /**
-     * Refreshes the card content (it doesn't inflate layouts again)
+     * Refreshes the card content (it doesn't inflate layouts again).
+     * </p>
+     * If the card is already bound to this view and {@link Card#isPartialRefreshEnabled()},
+     * only the pieces changed since the last bind are refreshed, see {@link Card#markChanged(int)}.
      *
      * @param card
      */
     public void refreshCard(Card card) {
         mIsRecycle=true;
-        setCard(card);
+        final int changes = card != null && card.isPartialRefreshEnabled() ? card.getChanges() : 0;
+        if (card == mCard && changes != 0 && changes != Card.CHANGE_ALL && !isForceReplaceInnerLayout())
+            refreshUI(changes);
+        else
+            setCard(card);
         mIsRecycle=false;
     }
 
@@ -310,6 +450,54 @@ public class CardView extends BaseCardView implements CardViewWrapper {
 
         //Setup Drawable Resources
         setupDrawableResources();
+
+        //Everything is applied
+        mCard.clearChanges();
+    }
+
+    /**
+     * Reapplies only the pieces of the card which changed since the last bind
+     *
+     * @param changes changed pieces, see {@link Card#CHANGE_ALL}
+     */
+    protected void refreshUI(int changes) {
+
+        mCardHeader=mCard.getCardHeader();
+        mCardThumbnail=mCard.getCardThumbnail();
+        mCardExpand=mCard.getCardExpand();
+
+        //The expand action can replace the click listener of the card: set it again over the listeners
+        if ((changes & Card.CHANGE_LISTENERS) != 0)
+            changes |= Card.CHANGE_EXPAND_ACTION;
+
+        if ((changes & Card.CHANGE_SHADOW) != 0)
+            setupShadowView();
+
+        if ((changes & Card.CHANGE_HEADER) != 0)
+            setupHeaderView();
+
+        if ((changes & Card.CHANGE_CONTENT) != 0)
+            setupMainView();
+
+        if ((changes & Card.CHANGE_THUMBNAIL) != 0)
+            setupThumbnailView();
+
+        if ((changes & Card.CHANGE_EXPAND) != 0)
+            setupExpandView();
+
+        if ((changes & (Card.CHANGE_CONTENT | Card.CHANGE_LISTENERS)) != 0)
+            setupSupplementalActions();
+
+        if ((changes & Card.CHANGE_LISTENERS) != 0)
+            setupListeners();
+
+        if ((changes & Card.CHANGE_EXPAND_ACTION) != 0)
+            setupExpandAction();
+
+        if ((changes & Card.CHANGE_BACKGROUND) != 0)
+            setupDrawableResources();
+
+        mCard.clearChanges();
     }
 
 
@@ -321,6 +509,11 @@ public class CardView extends BaseCardView implements CardViewWrapper {
 
         super.retrieveLayoutIDs();
 
+        //The views are new: nothing is applied to them
+        resetBindState();
+        //The listeners of the old views would be kept alive by the map
+        mSwipeListeners.clear();
+
         mRevealLayout = (FrameLayout) findViewById(R.id.card_reveal_layout);
 
         //Main Layout
@@ -502,28 +695,8 @@ public class CardView extends BaseCardView implements CardViewWrapper {
 
     protected void setupExpandAction(){
 
-        //Config ExpandLayout and its animation
-        if ( mInternalExpandLayout !=null && ( (mCardHeader!=null && mCardHeader.isButtonExpandVisible()) ||
-                mCard.getViewToClickToExpand()!=null)  ){
-
-            //Create the expand/collapse animator
-            mInternalExpandLayout.getViewTreeObserver().addOnPreDrawListener(
-                    new ViewTreeObserver.OnPreDrawListener() {
-
-                        @Override
-                        public boolean onPreDraw() {
-                            mInternalExpandLayout.getViewTreeObserver().removeOnPreDrawListener(this);
-
-                            View parent = (View) mInternalExpandLayout.getParent();
-                            final int widthSpec = View.MeasureSpec.makeMeasureSpec(parent.getMeasuredWidth() - parent.getPaddingLeft() - parent.getPaddingRight(), View.MeasureSpec.AT_MOST);
-                            final int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
-                            mInternalExpandLayout.measure(widthSpec, heightSpec);
-
-                            mExpandAnimator = ExpandCollapseHelper.createSlideAnimator((CardView)mCard.getCardView(), 0, mInternalExpandLayout.getMeasuredHeight());
-                            return true;
-                        }
-                    });
-        }
+        //The expand layout is measured and its animator is created only when an expand
+        //is requested, see getExpandAnimator()
 
         //Setup action and callback
         setupExpandCollapseActionListener();
@@ -561,24 +734,18 @@ public class CardView extends BaseCardView implements CardViewWrapper {
                     HashMap<Integer,Card.OnCardClickListener> mMultipleOnClickListner=mCard.getMultipleOnClickListener();
                     if (mMultipleOnClickListner!=null && !mMultipleOnClickListner.isEmpty()){
                         hasPartialClickListener = true;
-                        for (int key:mMultipleOnClickListner.keySet()){
+                        // The areas are iterated instead of the keys: no iterator is allocated
+                        for (int key : CLICK_AREAS){
+                            if (!mMultipleOnClickListner.containsKey(key)) continue;
                             View viewClickable= decodeAreaOnClickListener(key);
-                            final Card.OnCardClickListener mListener=mMultipleOnClickListner.get(key);
                             if (viewClickable!=null){
                                 //Add listener to this view
-                                viewClickable.setOnClickListener(new OnClickListener() {
-                                    @Override
-                                    public void onClick(View v) {
-                                        //Callback to card listener
-                                        if (mListener!=null)
-                                            mListener.onClick(mCard,v);
-                                    }
-                                });
-
-                                //Add Selector to this view
-                                if (key > Card.CLICK_LISTENER_ALL_VIEW) {
-                                    mHelperImpl.setCardSelector(viewClickable, getResources().getDrawable(R.drawable.card_selector));
+                                viewClickable.setOnClickListener(mPartialClickListener);
 
+                                //Add Selector to this view, once: it is never removed
+                                if (key > Card.CLICK_LISTENER_ALL_VIEW && (mSelectorAreas & (1 << key)) == 0) {
+                                    mHelperImpl.setCardSelector(viewClickable, getResources().getDrawable(R.drawable.card_selector));
+                                    mSelectorAreas |= 1 << key;
                                 }
                             }
                         }
@@ -595,35 +762,18 @@ public class CardView extends BaseCardView implements CardViewWrapper {
         // LongClick and partial listeners.
         if (mCard.isLongClickable()) {
             if (mCard.getOnLongClickListener() != null) {
-                this.setOnLongClickListener(new OnLongClickListener() {
-                    @Override
-                    public boolean onLongClick(View v) {
-                        if (mCard.getOnLongClickListener()!=null)
-                            return mCard.getOnLongClickListener().onLongClick(mCard, v);
-                        return false;
-                    }
-                });
+                this.setOnLongClickListener(mCardLongClickListener);
             }
             HashMap<Integer, Card.OnLongCardClickListener> multipleOnLongClickListner =
                     mCard.getMultipleOnLongClickListener();
             if (multipleOnLongClickListner != null && !multipleOnLongClickListner.isEmpty()) {
 
-                for (int key : multipleOnLongClickListner.keySet()) {
+                for (int key : CLICK_AREAS) {
+                    if (!multipleOnLongClickListner.containsKey(key)) continue;
                     View viewLongClickable = decodeAreaOnClickListener(key);
-                    final Card.OnLongCardClickListener listener =
-                            multipleOnLongClickListner.get(key);
                     if (viewLongClickable != null) {
                         //Add listener to this view
-                        viewLongClickable.setOnLongClickListener(new OnLongClickListener() {
-                            @Override
-                            public boolean onLongClick(View v) {
-                                //Callback to card listener
-                                if (listener != null) {
-                                    return listener.onLongClick(mCard, v);
-                                }
-                                return false;
-                            }
-                        });
+                        viewLongClickable.setOnLongClickListener(mPartialLongClickListener);
                         // We may have only partial longclicklistener. So add for each view
                         // in this case the global click listener.
                         // As well add for this view if available the swipe listener.
@@ -638,69 +788,47 @@ public class CardView extends BaseCardView implements CardViewWrapper {
             this.setLongClickable(false);
         }
 
-        mRevealLayout.setOnTouchListener(new View.OnTouchListener() {
-            @Override
-            public boolean onTouch(View v, MotionEvent event) {
-                mUpX = (int) event.getRawX();
-                mUpY = (int) event.getRawY();
-                return false;
-            }
-        });
-        mRevealLayout.setOnLongClickListener(new View.OnLongClickListener() {
-            @Override
-            public boolean onLongClick(View v) {
-                int[] temp = new int[2];
-                getLocationOnScreen(temp);
-                int x = mUpX - temp[0];
-                int y = mUpY - temp[1];
-                if (isOptionsVisible()) {
-                    hideOptions(x, y);
-                } else {
-                    showOptions(x, y);
-                }
-                return true;
-            }
-        });
+        mRevealLayout.setOnTouchListener(mRevealTouchListener);
+        mRevealLayout.setOnLongClickListener(mRevealLongClickListener);
         addGlobalClickListener(mRevealLayout);
     }
 
     private void addGlobalClickListener(View view) {
         if (mCard.isClickable() && !mCard.isMultiChoiceEnabled()
                 && mCard.getOnClickListener() != null) {
-            view.setOnClickListener(new OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                   if (mCard.getOnClickListener() != null) {
-                       mCard.getOnClickListener().onClick(mCard, v);
-                   }
-                }
-            });
+            view.setOnClickListener(mCardClickListener);
         }
     }
 
     private void addGlobalSwipeListener(View view) {
         if (mCard.isSwipeable()) {
-            view.setOnTouchListener(new SwipeDismissViewTouchListener(this,
-                    mCard, new SwipeDismissViewTouchListener.DismissCallbacks() {
-                @Override
-                public boolean canDismiss(Card card) {
-                    return card.isSwipeable();
-                }
-
-                @Override
-                public void onDismiss(CardViewWrapper cardView, Card card) {
-                    final ViewGroup vg = (ViewGroup)(cardView.getCardParent());
-                    if (vg!=null){
-                        vg.removeView(cardView.getCardView());
-                        card.onSwipeCard();
-                    }
-                }
-            }));
+            SwipeDismissViewTouchListener listener = mSwipeListeners.get(view);
+            if (listener == null) {
+                listener = new SwipeDismissViewTouchListener(this, mCard, mDismissCallbacks);
+                mSwipeListeners.put(view, listener);
+            } else {
+                listener.setCard(mCard);
+            }
+            view.setOnTouchListener(listener);
         } else {
             view.setOnTouchListener(null);
         }
     }
 
+    /**
+     * Returns the area of a view with a partial click listener
+     *
+     * @param view view
+     * @return area, see {@link #decodeAreaOnClickListener(int)}
+     */
+    private int getClickArea(View view) {
+        for (int area : CLICK_AREAS) {
+            if (area != Card.CLICK_LISTENER_ALL_VIEW && decodeAreaOnClickListener(area) == view)
+                return area;
+        }
+        return Card.CLICK_LISTENER_ALL_VIEW;
+    }
+
     /**
      * Reset all partial listeners
      */
@@ -779,9 +907,10 @@ public class CardView extends BaseCardView implements CardViewWrapper {
             //ButtonExpandVisible has a priority to viewClickToExpand
             if (mCardHeader != null && mCardHeader.isButtonExpandVisible()) {
 
-                viewToClickToExpand = ViewToClickToExpand.builder()
-                        .setupView(mInternalHeaderLayout.getImageButtonExpand())
-                        .highlightView(true);
+                if (mHeaderViewToClickToExpand == null)
+                    mHeaderViewToClickToExpand = ViewToClickToExpand.builder().highlightView(true);
+                viewToClickToExpand = mHeaderViewToClickToExpand
+                        .setupView(mInternalHeaderLayout.getImageButtonExpand());
                 internal_blockForLongClickOnImageButtonExpand = true;
 
             } else if (mCard.getViewToClickToExpand() != null) {
@@ -791,7 +920,7 @@ public class CardView extends BaseCardView implements CardViewWrapper {
 
             if (viewToClickToExpand != null) {
 
-                TitleViewOnClickListener titleViewOnClickListener = new TitleViewOnClickListener(mInternalExpandLayout, mCard, viewToClickToExpand.isViewToSelect());
+                TitleViewOnClickListener titleViewOnClickListener = getExpandClickListener(viewToClickToExpand.isViewToSelect());
 
                 /*if (mCardHeader!=null && mCardHeader.isButtonExpandVisible() && mInternalHeaderLayout != null) {
                     mInternalHeaderLayout.setOnClickExpandCollapseActionListener(titleViewOnClickListener);
@@ -805,7 +934,7 @@ public class CardView extends BaseCardView implements CardViewWrapper {
                         viewToClick.setOnClickListener(titleViewOnClickListener);
                     }else{
                         if (viewToClickToExpand.isUseLongClick()){
-                            viewToClick.setOnLongClickListener(new TitleViewOnLongClickListener(titleViewOnClickListener));
+                            viewToClick.setOnLongClickListener(getExpandLongClickListener());
                         }else{
                             viewToClick.setOnClickListener(titleViewOnClickListener);
                         }
@@ -829,7 +958,7 @@ public class CardView extends BaseCardView implements CardViewWrapper {
                         }
                         if (viewToClick != null) {
                             if (viewToClickToExpand.isUseLongClick()){
-                                viewToClick.setOnLongClickListener(new TitleViewOnLongClickListener(titleViewOnClickListener));
+                                viewToClick.setOnLongClickListener(getExpandLongClickListener());
                             }else{
                                 viewToClick.setOnClickListener(titleViewOnClickListener);
                             }
@@ -863,6 +992,9 @@ public class CardView extends BaseCardView implements CardViewWrapper {
     protected void setupExpandView(){
         if (mInternalExpandLayout!=null && mCardExpand!=null){
 
+            //The content is set up again and may have changed: the cached height is stale
+            ExpandHeightCache.invalidate(mCard.getId());
+
             //Check if view can be recycled
             //It can happen in a listView, and improves performances
             if (!isRecycle() || isForceReplaceInnerLayout()){
@@ -879,15 +1011,69 @@ public class CardView extends BaseCardView implements CardViewWrapper {
             }
 
             ViewGroup.LayoutParams layoutParams = mInternalExpandLayout.getLayoutParams();
-            layoutParams.height = LayoutParams.WRAP_CONTENT;
-            mInternalExpandLayout.setLayoutParams(layoutParams);
+            if (layoutParams.height != LayoutParams.WRAP_CONTENT) {
+                layoutParams.height = LayoutParams.WRAP_CONTENT;
+                mInternalExpandLayout.setLayoutParams(layoutParams);
+            }
+        }
+    }
+
+    /**
+     * Returns the animator which expands the hidden layout.
+     * The layout is measured only if its height isn't cached for this card and width.
+     *
+     * @return animator, <code>null</code> if the card has no expand layout
+     */
+    protected Animator getExpandAnimator() {
+        if (mInternalExpandLayout == null || mInternalExpandLayout.getParent() == null)
+            return null;
+
+        final int height = ExpandHeightCache.getHeight(mInternalExpandLayout, mCard.getId());
+        if (mExpandAnimator instanceof ValueAnimator) {
+            ((ValueAnimator) mExpandAnimator).setIntValues(0, height);
+        } else {
+            mExpandAnimator = ExpandCollapseHelper.createSlideAnimator(this, 0, height);
         }
+        return mExpandAnimator;
+    }
+
+    /**
+     * Returns the listener which expands and collapses the hidden layout, pointed at the current card
+     */
+    private TitleViewOnClickListener getExpandClickListener(boolean viewToSelect) {
+        if (mExpandClickListener == null) {
+            mExpandClickListener = new TitleViewOnClickListener(mInternalExpandLayout, mCard, viewToSelect);
+        } else {
+            mExpandClickListener.mExpandContainerHelper.set(mInternalExpandLayout, mCard, viewToSelect);
+        }
+        return mExpandClickListener;
+    }
+
+    /**
+     * Returns the long click listener which forwards to {@link #getExpandClickListener(boolean)}
+     */
+    private TitleViewOnLongClickListener getExpandLongClickListener() {
+        if (mExpandLongClickListener == null)
+            mExpandLongClickListener = new TitleViewOnLongClickListener(mExpandClickListener);
+        return mExpandLongClickListener;
+    }
+
+    /**
+     * Returns the helper used by {@link #doToggleExpand()}, {@link #doExpand()} and {@link #doCollapse()}
+     */
+    private ExpandContainerHelper getExpandContainerHelper() {
+        if (mExpandContainerHelper == null) {
+            mExpandContainerHelper = new ExpandContainerHelper(mInternalExpandLayout, mCard, false);
+        } else {
+            mExpandContainerHelper.set(mInternalExpandLayout, mCard, false);
+        }
+        return mExpandContainerHelper;
     }
 
     public void doToggleExpand() {
 
         if (mInternalExpandLayout != null) {
-            ExpandContainerHelper helper = new ExpandContainerHelper(mInternalExpandLayout, mCard, false);
+            ExpandContainerHelper helper = getExpandContainerHelper();
 
             boolean isVisible = mInternalExpandLayout.getVisibility() == View.VISIBLE;
             if (isVisible) {
@@ -901,7 +1087,7 @@ public class CardView extends BaseCardView implements CardViewWrapper {
     public void doExpand() {
 
         if (mInternalExpandLayout != null) {
-            ExpandContainerHelper helper = new ExpandContainerHelper(mInternalExpandLayout, mCard, false);
+            ExpandContainerHelper helper = getExpandContainerHelper();
 
             boolean isVisible = mInternalExpandLayout.getVisibility() == View.VISIBLE;
             if (!isVisible) {
@@ -913,7 +1099,7 @@ public class CardView extends BaseCardView implements CardViewWrapper {
     public void doCollapse() {
 
         if (mInternalExpandLayout != null) {
-            ExpandContainerHelper helper = new ExpandContainerHelper(mInternalExpandLayout, mCard, false);
+            ExpandContainerHelper helper = getExpandContainerHelper();
 
             boolean isVisible = mInternalExpandLayout.getVisibility() == View.VISIBLE;
             if (isVisible) {
@@ -982,6 +1168,13 @@ public class CardView extends BaseCardView implements CardViewWrapper {
         private boolean viewToSelect=true;
 
         private ExpandContainerHelper(View contentParent, Card card, boolean viewToSelect) {
+            set(contentParent, card, viewToSelect);
+        }
+
+        /**
+         * Points the helper at the card bound to the view
+         */
+        private void set(View contentParent, Card card, boolean viewToSelect) {
             this.contentParent = contentParent;
             this.card = card;
             this.viewToSelect = viewToSelect;
@@ -1016,17 +1209,22 @@ public class CardView extends BaseCardView implements CardViewWrapper {
             }else{
                 //Std animator
                 helper.contentParent.setVisibility(View.VISIBLE);
-                if (helper.getCardView().mExpandAnimator != null) {
-                    helper.getCardView().mExpandAnimator.addListener(new AnimatorListenerAdapter() {
+                final Animator expandAnimator = helper.getCardView().getExpandAnimator();
+                if (expandAnimator != null) {
+                    //The helper is pointed at the next card when the view is bound again
+                    final Card card = helper.card;
+                    //The animator is reused: drop the listener of the previous expand
+                    expandAnimator.removeAllListeners();
+                    expandAnimator.addListener(new AnimatorListenerAdapter() {
                         @Override
                         public void onAnimationEnd(Animator animation) {
-                            helper.card.setExpanded(true);
+                            card.setExpanded(true);
                             //Callback
-                            if (helper.card.getOnExpandAnimatorEndListener() != null)
-                                helper.card.getOnExpandAnimatorEndListener().onExpandEnd(helper.card);
+                            if (card.getOnExpandAnimatorEndListener() != null)
+                                card.getOnExpandAnimatorEndListener().onExpandEnd(card);
                         }
                     });
-                    helper.getCardView().mExpandAnimator.start();
+                    expandAnimator.start();
                 }else{
                     if (helper.card.getOnExpandAnimatorEndListener() != null)
                         helper.card.getOnExpandAnimatorEndListener().onExpandEnd(helper.card);
@@ -1050,6 +1248,9 @@ public class CardView extends BaseCardView implements CardViewWrapper {
             }else{
                 //Std animator
                 int origHeight = helper.contentParent.getHeight();
+                //The helper is pointed at the next card when the view is bound again
+                final Card card = helper.card;
+                final View contentParent = helper.contentParent;
 
                 ValueAnimator animator = createSlideAnimator(helper.getCardView(),origHeight, 0);
                 animator.addListener(new Animator.AnimatorListener() {
@@ -1059,11 +1260,11 @@ public class CardView extends BaseCardView implements CardViewWrapper {
 
                     @Override
                     public void onAnimationEnd(Animator animator) {
-                        helper.contentParent.setVisibility(View.GONE);
-                        helper.card.setExpanded(false);
+                        contentParent.setVisibility(View.GONE);
+                        card.setExpanded(false);
                         //Callback
-                        if (helper.card.getOnCollapseAnimatorEndListener() != null)
-                            helper.card.getOnCollapseAnimatorEndListener().onCollapseEnd(helper.card);
+                        if (card.getOnCollapseAnimatorEndListener() != null)
+                            card.getOnCollapseAnimatorEndListener().onCollapseEnd(card);
                     }
 
                     @Override
@@ -1146,6 +1347,19 @@ public class CardView extends BaseCardView implements CardViewWrapper {
         return b;
     }
 
+    /**
+     * Exports the card to an image file without stalling the UI thread.
+     * The card is drawn into a pooled bitmap, which is compressed on a worker thread.
+     * See {@link BitmapExporter} to export many cards.
+     *
+     * @param format   format of the file
+     * @param quality  quality of the lossy formats, between 0 and 100
+     * @param listener listener invoked on the main thread with the file
+     */
+    public void exportBitmap(Bitmap.CompressFormat format, int quality, BitmapExporter.OnExportListener listener) {
+        BitmapExporter.getInstance().export(this, format, quality, listener);
+    }
+
     // -------------------------------------------------------------
     //  Getter and Setter
     // -------------------------------------------------------------
@@ -1220,9 +1434,11 @@ public class CardView extends BaseCardView implements CardViewWrapper {
      */
     @Override
     public void changeBackgroundResourceId(int drawableResourceId) {
-        if (drawableResourceId!=0){
+        if (drawableResourceId!=0 && drawableResourceId!=mAppliedBackgroundResourceId){
             if (mInternalMainCardLayout!=null){
                 mInternalMainCardLayout.setBackgroundResource(drawableResourceId);
+                mAppliedBackgroundResourceId = drawableResourceId;
+                mAppliedBackgroundResource = null;
             }
         }
     }
@@ -1234,13 +1450,25 @@ public class CardView extends BaseCardView implements CardViewWrapper {
      */
     @Override
     public void changeBackgroundResource(Drawable drawableResource) {
-        if (drawableResource!=null){
+        if (drawableResource!=null && drawableResource!=mAppliedBackgroundResource){
             if (mInternalMainCardLayout!=null){
                 mHelperImpl.setBackground(mInternalMainCardLayout, drawableResource);
+                mAppliedBackgroundResource = drawableResource;
+                mAppliedBackgroundResourceId = 0;
             }
         }
     }
 
+    /**
+     * Forgets the state applied by the previous binds: the next bind applies everything again.
+     * Call it after changing the internal views directly.
+     */
+    public void resetBindState() {
+        mAppliedBackgroundResourceId = 0;
+        mAppliedBackgroundResource = null;
+        mSelectorAreas = 0;
+    }
+
     @Override
     public void changeBackgroundColorResourceId(int colorResourceId) {
         //TODO : do nothing for now
@@ -36,7 +36,6 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewParent;
-import android.view.ViewTreeObserver;
 import android.widget.LinearLayout;
 
 import java.util.HashMap;
@@ -47,11 +46,13 @@ import com.android.cards.internal.CardExpand;
 import com.android.cards.internal.CardHeader;
 import com.android.cards.internal.CardThumbnail;
 import com.android.cards.internal.ViewToClickToExpand;
+import com.android.cards.utils.BitmapExporter;
 import com.android.cards.view.base.CardViewWrapper;
 import com.android.cards.view.component.CardHeaderView;
 import com.android.cards.view.component.CardThumbnailView;
 import com.android.cards.view.helper.CardViewHelper;
 import com.android.cards.view.helper.CardViewHelperUtil;
+import com.android.cards.view.helper.ExpandHeightCache;
 import com.android.cards.view.listener.SwipeDismissViewTouchListener;
 
 /**
@@ -210,12 +211,105 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
     /** Animator to expand/collapse */
     protected Animator mExpandAnimator;
 
+    /**
+     * Expand/collapse listeners and helper, created once for each view and pointed at the current card
+     */
+    private ViewToClickToExpand mHeaderViewToClickToExpand;
+    private TitleViewOnClickListener mExpandClickListener;
+    private TitleViewOnLongClickListener mExpandLongClickListener;
+    private ExpandContainerHelper mExpandContainerHelper;
+
     /**
      * Listener invoked when Expand Animator starts
      * It is used internally
      */
     protected OnExpandListAnimatorListener mOnExpandListAnimatorListener;
 
+    /**
+     * Areas which can have a partial click listener
+     */
+    private static final int[] CLICK_AREAS = {Card.CLICK_LISTENER_ALL_VIEW, Card.CLICK_LISTENER_THUMBNAIL_VIEW,
+            Card.CLICK_LISTENER_HEADER_VIEW, Card.CLICK_LISTENER_CONTENT_VIEW, Card.CLICK_LISTENER_ACTIONAREA1_VIEW};
+
+    /**
+     * Swipe listener, created once and pointed at the current card
+     */
+    private SwipeDismissViewTouchListener mSwipeListener;
+
+    //--------------------------------------------------------------------------
+    // Bind state
+    //--------------------------------------------------------------------------
+
+    // State applied by the previous binds: a card bound again with the same values
+    // doesn't touch the views, which avoids invalidations and layout passes.
+
+    /**
+     * Background resource id applied to the main layout, {@link Card#DEFAULT_COLOR} if none
+     */
+    private int mAppliedBackgroundResourceId = Card.DEFAULT_COLOR;
+
+    /**
+     * Background drawable applied to the main layout, <code>null</code> if none
+     */
+    private Drawable mAppliedBackgroundResource;
+
+    /**
+     * Background color resource id applied to the main layout, {@link Card#DEFAULT_COLOR} if none
+     */
+    private int mAppliedBackgroundColorResourceId = Card.DEFAULT_COLOR;
+
+    //--------------------------------------------------------------------------
+    // Listeners
+    //--------------------------------------------------------------------------
+
+    // The listeners are owned by the CardView and refer to the current card,
+    // so that binding a recycled view doesn't allocate them again.
+
+    private final OnClickListener mCardClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            if (mCard != null && mCard.getOnClickListener() != null)
+                mCard.getOnClickListener().onClick(mCard, v);
+        }
+    };
+
+    private final OnClickListener mPartialClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            if (mCard == null || mCard.getMultipleOnClickListener() == null) return;
+            final Card.OnCardClickListener listener = mCard.getMultipleOnClickListener().get(getClickArea(v));
+            //Callback to card listener
+            if (listener != null)
+                listener.onClick(mCard, v);
+        }
+    };
+
+    private final OnLongClickListener mCardLongClickListener = new OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            if (mCard != null && mCard.getOnLongClickListener() != null)
+                return mCard.getOnLongClickListener().onLongClick(mCard, v);
+            return false;
+        }
+    };
+
+    private final SwipeDismissViewTouchListener.DismissCallbacks mDismissCallbacks =
+            new SwipeDismissViewTouchListener.DismissCallbacks() {
+        @Override
+        public boolean canDismiss(Card card) {
+            return card.isSwipeable();
+        }
+
+        @Override
+        public void onDismiss(CardViewWrapper cardView, Card card) {
+            final ViewGroup vg = (ViewGroup)(((View)cardView).getParent());
+            if (vg!=null){
+                vg.removeView((View)cardView);
+                card.onSwipeCard();
+            }
+        }
+    };
+
     //--------------------------------------------------------------------------
     // Constructor
     //--------------------------------------------------------------------------
@@ -342,13 +436,20 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
     }
 
     /**
-     * Refreshes the card content (it doesn't inflate layouts again)
+     * Refreshes the card content (it doesn't inflate layouts again).
+     * </p>
+     * If the card is already bound to this view and {@link Card#isPartialRefreshEnabled()},
+     * only the pieces changed since the last bind are refreshed, see {@link Card#markChanged(int)}.
      *
      * @param card
      */
     public void refreshCard(Card card) {
         mIsRecycle=true;
-        setCard(card);
+        final int changes = card != null && card.isPartialRefreshEnabled() ? card.getChanges() : 0;
+        if (card == mCard && changes != 0 && changes != Card.CHANGE_ALL && !isForceReplaceInnerLayout())
+            refreshUI(changes);
+        else
+            setCard(card);
         mIsRecycle=false;
     }
 
@@ -401,6 +502,54 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
 
         //Setup Drawable Resources
         setupDrawableResources();
+
+        //Everything is applied
+        mCard.clearChanges();
+    }
+
+    /**
+     * Reapplies only the pieces of the card which changed since the last bind
+     *
+     * @param changes changed pieces, see {@link Card#CHANGE_ALL}
+     */
+    protected void refreshUI(int changes) {
+
+        mCardHeader=mCard.getCardHeader();
+        mCardThumbnail=mCard.getCardThumbnail();
+        mCardExpand=mCard.getCardExpand();
+
+        //The expand action can replace the click listener of the card: set it again over the listeners
+        if ((changes & Card.CHANGE_LISTENERS) != 0)
+            changes |= Card.CHANGE_EXPAND_ACTION;
+
+        if ((changes & Card.CHANGE_SHADOW) != 0)
+            setupShadowView();
+
+        if ((changes & Card.CHANGE_HEADER) != 0)
+            setupHeaderView();
+
+        if ((changes & Card.CHANGE_CONTENT) != 0)
+            setupMainView();
+
+        if ((changes & Card.CHANGE_THUMBNAIL) != 0)
+            setupThumbnailView();
+
+        if ((changes & Card.CHANGE_EXPAND) != 0)
+            setupExpandView();
+
+        if ((changes & (Card.CHANGE_CONTENT | Card.CHANGE_LISTENERS)) != 0)
+            setupSupplementalActions();
+
+        if ((changes & Card.CHANGE_LISTENERS) != 0)
+            setupListeners();
+
+        if ((changes & Card.CHANGE_EXPAND_ACTION) != 0)
+            setupExpandAction();
+
+        if ((changes & Card.CHANGE_BACKGROUND) != 0)
+            setupDrawableResources();
+
+        mCard.clearChanges();
     }
 
 
@@ -409,6 +558,9 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
      */
     protected void retrieveLayoutIDs(){
 
+        //The views are new: nothing is applied to them
+        resetBindState();
+
         //Main Layout
         mInternalMainCardLayout = (View) findViewById(R.id.card_main_layout);
 
@@ -431,7 +583,8 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
      * @return
      */
     protected void setupShadowView() {
-        if (mCard != null && mCard.getCardElevation() != null) {
+        if (mCard != null && mCard.getCardElevation() != null
+                && mCard.getCardElevation() != getCardElevation()) {
             this.setCardElevation(mCard.getCardElevation());
         }
     }
@@ -544,28 +697,8 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
 
     protected void setupExpandAction(){
 
-        //Config ExpandLayout and its animation
-        if ( mInternalExpandLayout !=null && ( (mCardHeader!=null && mCardHeader.isButtonExpandVisible()) ||
-                mCard.getViewToClickToExpand()!=null)  ){
-
-            //Create the expand/collapse animator
-            mInternalExpandLayout.getViewTreeObserver().addOnPreDrawListener(
-                    new ViewTreeObserver.OnPreDrawListener() {
-
-                        @Override
-                        public boolean onPreDraw() {
-                            mInternalExpandLayout.getViewTreeObserver().removeOnPreDrawListener(this);
-
-                            View parent = (View) mInternalExpandLayout.getParent();
-                            final int widthSpec = View.MeasureSpec.makeMeasureSpec(parent.getMeasuredWidth() - parent.getPaddingLeft() - parent.getPaddingRight(), View.MeasureSpec.AT_MOST);
-                            final int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
-                            mInternalExpandLayout.measure(widthSpec, heightSpec);
-
-                            mExpandAnimator = ExpandCollapseHelper.createSlideAnimator((CardViewNative)mCard.getCardView(),0, mInternalExpandLayout.getMeasuredHeight());
-                            return true;
-                        }
-                    });
-        }
+        //The expand layout is measured and its animator is created only when an expand
+        //is requested, see getExpandAnimator()
 
         //Setup action and callback
         setupExpandCollapseActionListener();
@@ -580,21 +713,11 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
 
         //Swipe listener
         if (mCard.isSwipeable()){
-            this.setOnTouchListener(new SwipeDismissViewTouchListener(this, mCard,new SwipeDismissViewTouchListener.DismissCallbacks() {
-                @Override
-                public boolean canDismiss(Card card) {
-                    return card.isSwipeable();
-                }
-
-                @Override
-                public void onDismiss(CardViewWrapper cardView, Card card) {
-                    final ViewGroup vg = (ViewGroup)(((View)cardView).getParent());
-                    if (vg!=null){
-                        vg.removeView((View)cardView);
-                        card.onSwipeCard();
-                    }
-                }
-            }));
+            if (mSwipeListener == null)
+                mSwipeListener = new SwipeDismissViewTouchListener(this, mCard, mDismissCallbacks);
+            else
+                mSwipeListener.setCard(mCard);
+            this.setOnTouchListener(mSwipeListener);
         }else{
             this.setOnTouchListener(null);
         }
@@ -608,13 +731,7 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
             //Set the onClickListener
             if(!mCard.isMultiChoiceEnabled()){
                 if (mCard.getOnClickListener() != null) {
-                    this.setOnClickListener(new OnClickListener() {
-                        @Override
-                        public void onClick(View v) {
-                            if (mCard.getOnClickListener()!=null)
-                                mCard.getOnClickListener().onClick(mCard,v);
-                        }
-                    });
+                    this.setOnClickListener(mCardClickListener);
 
                     //Prevent multiple events
                     //if (!mCard.isSwipeable() && mCard.getOnSwipeListener() == null) {
@@ -625,19 +742,13 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
                     HashMap<Integer,Card.OnCardClickListener> mMultipleOnClickListner=mCard.getMultipleOnClickListener();
                     if (mMultipleOnClickListner!=null && !mMultipleOnClickListner.isEmpty()){
 
-                        for (int key:mMultipleOnClickListner.keySet()){
+                        // The areas are iterated instead of the keys: no iterator is allocated
+                        for (int key : CLICK_AREAS){
+                            if (!mMultipleOnClickListner.containsKey(key)) continue;
                             View viewClickable= decodeAreaOnClickListener(key);
-                            final Card.OnCardClickListener mListener=mMultipleOnClickListner.get(key);
                             if (viewClickable!=null){
                                 //Add listener to this view
-                                viewClickable.setOnClickListener(new OnClickListener() {
-                                    @Override
-                                    public void onClick(View v) {
-                                        //Callback to card listener
-                                        if (mListener!=null)
-                                            mListener.onClick(mCard,v);
-                                    }
-                                });
+                                viewClickable.setOnClickListener(mPartialClickListener);
 
                                 //Add Selector to this view
                                 if (key > Card.CLICK_LISTENER_ALL_VIEW) {
@@ -657,14 +768,7 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
 
         //LongClick listener
         if(mCard.isLongClickable()){
-            this.setOnLongClickListener(new OnLongClickListener() {
-                @Override
-                public boolean onLongClick(View v) {
-                    if (mCard.getOnLongClickListener()!=null)
-                        return mCard.getOnLongClickListener().onLongClick(mCard,v);
-                    return false;
-                }
-            });
+            this.setOnLongClickListener(mCardLongClickListener);
         }else{
             this.setLongClickable(false);
         }
@@ -725,6 +829,20 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
         return view;
     }
 
+    /**
+     * Returns the area of a view with a partial click listener
+     *
+     * @param view view
+     * @return area, see {@link #decodeAreaOnClickListener(int)}
+     */
+    private int getClickArea(View view) {
+        for (int area : CLICK_AREAS) {
+            if (area != Card.CLICK_LISTENER_ALL_VIEW && decodeAreaOnClickListener(area) == view)
+                return area;
+        }
+        return Card.CLICK_LISTENER_ALL_VIEW;
+    }
+
     //--------------------------------------------------------------------------
     // Expandable Actions and Listeners
     //--------------------------------------------------------------------------
@@ -742,9 +860,10 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
             //ButtonExpandVisible has a priority to viewClickToExpand
             if (mCardHeader != null && mCardHeader.isButtonExpandVisible()) {
 
-                viewToClickToExpand = ViewToClickToExpand.builder()
-                        .setupView(mInternalHeaderLayout.getImageButtonExpand())
-                        .highlightView(true);
+                if (mHeaderViewToClickToExpand == null)
+                    mHeaderViewToClickToExpand = ViewToClickToExpand.builder().highlightView(true);
+                viewToClickToExpand = mHeaderViewToClickToExpand
+                        .setupView(mInternalHeaderLayout.getImageButtonExpand());
                 internal_blockForLongClickOnImageButtonExpand = true;
 
             } else if (mCard.getViewToClickToExpand() != null) {
@@ -754,7 +873,7 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
 
             if (viewToClickToExpand != null) {
 
-                TitleViewOnClickListener titleViewOnClickListener = new TitleViewOnClickListener(mInternalExpandLayout, mCard, viewToClickToExpand.isViewToSelect());
+                TitleViewOnClickListener titleViewOnClickListener = getExpandClickListener(viewToClickToExpand.isViewToSelect());
 
                 /*if (mCardHeader!=null && mCardHeader.isButtonExpandVisible() && mInternalHeaderLayout != null) {
                     mInternalHeaderLayout.setOnClickExpandCollapseActionListener(titleViewOnClickListener);
@@ -768,7 +887,7 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
                         viewToClick.setOnClickListener(titleViewOnClickListener);
                     }else{
                         if (viewToClickToExpand.isUseLongClick()){
-                            viewToClick.setOnLongClickListener(new TitleViewOnLongClickListener(titleViewOnClickListener));
+                            viewToClick.setOnLongClickListener(getExpandLongClickListener());
                         }else{
                             viewToClick.setOnClickListener(titleViewOnClickListener);
                         }
@@ -792,7 +911,7 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
                         }
                         if (viewToClick != null) {
                             if (viewToClickToExpand.isUseLongClick()){
-                                viewToClick.setOnLongClickListener(new TitleViewOnLongClickListener(titleViewOnClickListener));
+                                viewToClick.setOnLongClickListener(getExpandLongClickListener());
                             }else{
                                 viewToClick.setOnClickListener(titleViewOnClickListener);
                             }
@@ -849,6 +968,13 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
         private boolean viewToSelect=true;
 
         private ExpandContainerHelper(View contentParent, Card card, boolean viewToSelect) {
+            set(contentParent, card, viewToSelect);
+        }
+
+        /**
+         * Points the helper at the card bound to the view
+         */
+        private void set(View contentParent, Card card, boolean viewToSelect) {
             this.contentParent = contentParent;
             this.card = card;
             this.viewToSelect = viewToSelect;
@@ -872,17 +998,22 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
             }else{
                 //Std animator
                 helper.contentParent.setVisibility(View.VISIBLE);
-                if (helper.getCardView().mExpandAnimator != null) {
-                    helper.getCardView().mExpandAnimator.addListener(new AnimatorListenerAdapter() {
+                final Animator expandAnimator = helper.getCardView().getExpandAnimator();
+                if (expandAnimator != null) {
+                    //The helper is pointed at the next card when the view is bound again
+                    final Card card = helper.card;
+                    //The animator is reused: drop the listener of the previous expand
+                    expandAnimator.removeAllListeners();
+                    expandAnimator.addListener(new AnimatorListenerAdapter() {
                         @Override
                         public void onAnimationEnd(Animator animation) {
-                            helper.card.setExpanded(true);
+                            card.setExpanded(true);
                             //Callback
-                            if (helper.card.getOnExpandAnimatorEndListener() != null)
-                                helper.card.getOnExpandAnimatorEndListener().onExpandEnd(helper.card);
+                            if (card.getOnExpandAnimatorEndListener() != null)
+                                card.getOnExpandAnimatorEndListener().onExpandEnd(card);
                         }
                     });
-                    helper.getCardView().mExpandAnimator.start();
+                    expandAnimator.start();
                 }else{
                     if (helper.card.getOnExpandAnimatorEndListener() != null)
                         helper.card.getOnExpandAnimatorEndListener().onExpandEnd(helper.card);
@@ -902,6 +1033,9 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
             }else{
                 //Std animator
                 int origHeight = helper.contentParent.getHeight();
+                //The helper is pointed at the next card when the view is bound again
+                final Card card = helper.card;
+                final View contentParent = helper.contentParent;
 
                 ValueAnimator animator = createSlideAnimator(helper.getCardView(),origHeight, 0);
                 animator.addListener(new Animator.AnimatorListener() {
@@ -911,11 +1045,11 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
 
                     @Override
                     public void onAnimationEnd(Animator animator) {
-                        helper.contentParent.setVisibility(View.GONE);
-                        helper.card.setExpanded(false);
+                        contentParent.setVisibility(View.GONE);
+                        card.setExpanded(false);
                         //Callback
-                        if (helper.card.getOnCollapseAnimatorEndListener()!=null)
-                            helper.card.getOnCollapseAnimatorEndListener().onCollapseEnd(helper.card);
+                        if (card.getOnCollapseAnimatorEndListener()!=null)
+                            card.getOnCollapseAnimatorEndListener().onCollapseEnd(card);
                     }
 
                     @Override
@@ -958,6 +1092,9 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
     protected void setupExpandView(){
         if (mInternalExpandLayout!=null && mCardExpand!=null){
 
+            //The content is set up again and may have changed: the cached height is stale
+            ExpandHeightCache.invalidate(mCard.getId());
+
             //Check if view can be recycled
             //It can happen in a listView, and improves performances
             if (!isRecycle() || isForceReplaceInnerLayout()){
@@ -974,15 +1111,69 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
             }
 
             ViewGroup.LayoutParams layoutParams = mInternalExpandLayout.getLayoutParams();
-            layoutParams.height = LinearLayout.LayoutParams.WRAP_CONTENT;
-            mInternalExpandLayout.setLayoutParams(layoutParams);
+            if (layoutParams.height != LinearLayout.LayoutParams.WRAP_CONTENT) {
+                layoutParams.height = LinearLayout.LayoutParams.WRAP_CONTENT;
+                mInternalExpandLayout.setLayoutParams(layoutParams);
+            }
+        }
+    }
+
+    /**
+     * Returns the animator which expands the hidden layout.
+     * The layout is measured only if its height isn't cached for this card and width.
+     *
+     * @return animator, <code>null</code> if the card has no expand layout
+     */
+    protected Animator getExpandAnimator() {
+        if (mInternalExpandLayout == null || mInternalExpandLayout.getParent() == null)
+            return null;
+
+        final int height = ExpandHeightCache.getHeight(mInternalExpandLayout, mCard.getId());
+        if (mExpandAnimator instanceof ValueAnimator) {
+            ((ValueAnimator) mExpandAnimator).setIntValues(0, height);
+        } else {
+            mExpandAnimator = ExpandCollapseHelper.createSlideAnimator(this, 0, height);
+        }
+        return mExpandAnimator;
+    }
+
+    /**
+     * Returns the listener which expands and collapses the hidden layout, pointed at the current card
+     */
+    private TitleViewOnClickListener getExpandClickListener(boolean viewToSelect) {
+        if (mExpandClickListener == null) {
+            mExpandClickListener = new TitleViewOnClickListener(mInternalExpandLayout, mCard, viewToSelect);
+        } else {
+            mExpandClickListener.mExpandContainerHelper.set(mInternalExpandLayout, mCard, viewToSelect);
+        }
+        return mExpandClickListener;
+    }
+
+    /**
+     * Returns the long click listener which forwards to {@link #getExpandClickListener(boolean)}
+     */
+    private TitleViewOnLongClickListener getExpandLongClickListener() {
+        if (mExpandLongClickListener == null)
+            mExpandLongClickListener = new TitleViewOnLongClickListener(mExpandClickListener);
+        return mExpandLongClickListener;
+    }
+
+    /**
+     * Returns the helper used by {@link #doToggleExpand()}, {@link #doExpand()} and {@link #doCollapse()}
+     */
+    private ExpandContainerHelper getExpandContainerHelper() {
+        if (mExpandContainerHelper == null) {
+            mExpandContainerHelper = new ExpandContainerHelper(mInternalExpandLayout, mCard, false);
+        } else {
+            mExpandContainerHelper.set(mInternalExpandLayout, mCard, false);
         }
+        return mExpandContainerHelper;
     }
 
     public void doToggleExpand() {
 
         if (mInternalExpandLayout != null) {
-            ExpandContainerHelper helper = new ExpandContainerHelper(mInternalExpandLayout, mCard, false);
+            ExpandContainerHelper helper = getExpandContainerHelper();
 
             boolean isVisible = mInternalExpandLayout.getVisibility() == View.VISIBLE;
             if (isVisible) {
@@ -996,7 +1187,7 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
     public void doExpand() {
 
         if (mInternalExpandLayout != null) {
-            ExpandContainerHelper helper = new ExpandContainerHelper(mInternalExpandLayout, mCard, false);
+            ExpandContainerHelper helper = getExpandContainerHelper();
 
             boolean isVisible = mInternalExpandLayout.getVisibility() == View.VISIBLE;
             if (!isVisible) {
@@ -1008,7 +1199,7 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
     public void doCollapse() {
 
         if (mInternalExpandLayout != null) {
-            ExpandContainerHelper helper = new ExpandContainerHelper(mInternalExpandLayout, mCard, false);
+            ExpandContainerHelper helper = getExpandContainerHelper();
 
             boolean isVisible = mInternalExpandLayout.getVisibility() == View.VISIBLE;
             if (isVisible) {
@@ -1090,8 +1281,11 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
      */
     @Override
     public void changeBackgroundResourceId(int drawableResourceId) {
-        if (drawableResourceId!=Card.DEFAULT_COLOR){
-            changeBackgroundResource(getResources().getDrawable(drawableResourceId));
+        if (drawableResourceId!=Card.DEFAULT_COLOR && drawableResourceId!=mAppliedBackgroundResourceId){
+            if (mInternalMainCardLayout!=null){
+                changeBackgroundResource(getResources().getDrawable(drawableResourceId));
+                mAppliedBackgroundResourceId = drawableResourceId;
+            }
         }
     }
 
@@ -1102,9 +1296,12 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
      */
     @Override
     public void changeBackgroundResource(Drawable drawableResource) {
-        if (drawableResource!=null){
+        if (drawableResource!=null && drawableResource!=mAppliedBackgroundResource){
             if (mInternalMainCardLayout!=null){
                 mHelperImpl.setBackground(mInternalMainCardLayout, drawableResource);
+                mAppliedBackgroundResource = drawableResource;
+                mAppliedBackgroundResourceId = Card.DEFAULT_COLOR;
+                mAppliedBackgroundColorResourceId = Card.DEFAULT_COLOR;
             }
         }
     }
@@ -1116,12 +1313,25 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
      */
     @Override
     public void changeBackgroundColorResourceId(int colorResourceId) {
-        if (colorResourceId!=Card.DEFAULT_COLOR){
+        if (colorResourceId!=Card.DEFAULT_COLOR && colorResourceId!=mAppliedBackgroundColorResourceId){
             //this.setBackgroundDrawable(mHelperImpl.getResourceFromAttrs(getContext(),R.attr.cardBackgroundColor));
             mInternalMainCardLayout.setBackgroundColor(getResources().getColor(colorResourceId));
+            mAppliedBackgroundColorResourceId = colorResourceId;
+            mAppliedBackgroundResourceId = Card.DEFAULT_COLOR;
+            mAppliedBackgroundResource = null;
         }
     }
 
+    /**
+     * Forgets the state applied by the previous binds: the next bind applies everything again.
+     * Call it after changing the internal views directly.
+     */
+    public void resetBindState() {
+        mAppliedBackgroundResourceId = Card.DEFAULT_COLOR;
+        mAppliedBackgroundResource = null;
+        mAppliedBackgroundColorResourceId = Card.DEFAULT_COLOR;
+    }
+
     // -------------------------------------------------------------
     //  Bitmap export
     // -------------------------------------------------------------
@@ -1144,6 +1354,19 @@ public class CardViewNative extends android.support.v7.widget.CardView implement
         return b;
     }
 
+    /**
+     * Exports the card to an image file without stalling the UI thread.
+     * The card is drawn into a pooled bitmap, which is compressed on a worker thread.
+     * See {@link BitmapExporter} to export many cards.
+     *
+     * @param format   format of the file
+     * @param quality  quality of the lossy formats, between 0 and 100
+     * @param listener listener invoked on the main thread with the file
+     */
+    public void exportBitmap(Bitmap.CompressFormat format, int quality, BitmapExporter.OnExportListener listener) {
+        BitmapExporter.getInstance().export(this, format, quality, listener);
+    }
+
     //--------------------------------------------------------------------------
     // Getters and Setters
     //--------------------------------------------------------------------------
@@ -24,26 +24,42 @@ import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
-import android.os.Build;
+import android.graphics.drawable.TransitionDrawable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.ref.WeakReference;
-import java.net.URL;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 import com.android.cards.Constants;
 import com.android.cards.internal.CardThumbnail;
+import com.android.cards.internal.thumbnail.ThumbnailLoader;
+import com.android.cards.internal.thumbnail.ThumbnailRequest;
+import com.android.cards.utils.BitmapPool;
 import com.android.cards.utils.CacheUtil;
+import com.android.cards.utils.HttpImageFetcher;
+import com.android.cards.utils.ThumbnailMetrics;
 import com.android.cards.view.base.CardViewInterface;
 
 import com.android.cards.R;
@@ -56,8 +72,8 @@ import com.android.cards.R;
  * Please note that this is currently in a preview state.
  * This means that the API is not fixed and you should expect changes between releases.
  * </p>
- * This class load a bitmap resource using {@link android.util.LruCache} and using an
- * AsyncTask to prevent UI blocks.
+ * This class load a bitmap resource using {@link android.util.LruCache} and using the shared
+ * {@link com.android.cards.internal.thumbnail.ThumbnailLoader} to prevent UI blocks.
  *
  * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
  */
@@ -98,6 +114,61 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface
 
     protected boolean mLoadingErrorResource = false;
 
+    /**
+     * Bitmap displayed by the ImageView, which can't be reused while it is attached
+     */
+    protected Bitmap mDisplayedBitmap;
+
+    /**
+     * Load waiting for the ImageView to be laid out
+     */
+    protected DeferredLoad mDeferredLoad;
+
+    /**
+     * Flag to load the image again when the view is reattached
+     */
+    protected boolean mReloadOnAttach = false;
+
+    /**
+     * Target size of the current load. Used only on the main thread.
+     */
+    protected final int[] mTargetSize = new int[2];
+
+    /**
+     * Preview displayed while the full image is loading, in progressive mode
+     */
+    protected Bitmap mPreviewBitmap;
+
+    /**
+     * Full image to load once its preview is displayed
+     */
+    protected ThumbnailRequest mPendingRequest;
+
+    /**
+     * Suffix of the keys of the previews
+     */
+    protected static final String PREVIEW_KEY_SUFFIX = "#preview";
+
+    /**
+     * Duration of the cross-fade from the preview to the full image
+     */
+    protected static final int CROSS_FADE_DURATION = 200;
+
+    /**
+     * Buffer used to read images from a stream
+     */
+    protected static final int DECODE_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Bytes kept to rewind the stream after the bounds pass
+     */
+    protected static final int DECODE_MARK_LIMIT = 64 * 1024;
+
+    /**
+     * An image is kept in the encoded cache only if it is smaller than 1/MAX_ENCODED_ENTRY_FRACTION of it
+     */
+    protected static final int MAX_ENCODED_ENTRY_FRACTION = 8;
+
     //--------------------------------------------------------------------------
     // Constructors
     //--------------------------------------------------------------------------
@@ -175,31 +246,9 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface
         mImageView= (ImageView) findViewById(R.id.card_thumbnail_image);
 
 
-        // Get max available VM memory, exceeding this amount will throw an
-        // OutOfMemory exception. Stored in kilobytes as LruCache takes an
-        // int in its constructor.
-        final int maxMemory = (int) (Runtime.getRuntime().maxMemory() / 1024);
-
-        // Use 1/8th of the available memory for this memory cache.
-        final int cacheSize = maxMemory / 8;
-
+        // Memory cache, disk cache for downloaded images and trim on memory pressure
+        CacheUtil.init(getContext());
         mMemoryCache = CacheUtil.getMemoryCache();
-        if (mMemoryCache==null){
-            mMemoryCache = new LruCache<String, Bitmap>(cacheSize) {
-
-                @Override
-                protected int sizeOf(String key, Bitmap bitmap) {
-                    // The cache size will be measured in kilobytes rather than
-                    // number of items.
-                    if (Build.VERSION.SDK_INT > Build.VERSION_CODES.HONEYCOMB_MR1) {
-                        return bitmap.getByteCount() / 1024;
-                    } else {
-                        return bitmap.getRowBytes() * bitmap.getHeight() / 1024;
-                    }
-                }
-            };
-            CacheUtil.putMemoryCache(mMemoryCache);
-        }
     }
 
     //--------------------------------------------------------------------------
@@ -242,6 +291,14 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface
             mCardThumbnail.setupInnerViewElements((ViewGroup)mInternalOuterView,mImageView);
 
         //Load bitmap
+        loadThumbnail();
+    }
+
+    /**
+     * Loads the image of the {@link CardThumbnail}
+     */
+    protected void loadThumbnail(){
+        cancelDeferredLoad();
         if (!mCardThumbnail.isExternalUsage()){
             if (mCardThumbnail.getCustomSource() != null)
                 loadBitmap(mCardThumbnail.getCustomSource(), mImageView);
@@ -252,65 +309,492 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface
         }
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        // A load waiting for the layout is dropped too: its listener must not outlive the window
+        if (mDeferredLoad != null) {
+            cancelDeferredLoad();
+            mReloadOnAttach = true;
+        }
+
+        // Drop the work before it starts: nobody can see the result
+        if (mImageView != null && ThumbnailLoader.getInstance().cancel(mImageView)) {
+            mImageView.setImageDrawable(null);
+            mReloadOnAttach = true;
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        if (mReloadOnAttach) {
+            mReloadOnAttach = false;
+            if (mCardThumbnail != null) {
+                mLoadingErrorResource = false;
+                loadThumbnail();
+            }
+        }
+    }
+
     //--------------------------------------------------------------------------
     // Load Bitmap and cache manage
     //--------------------------------------------------------------------------
 
-    public void loadBitmap(int resId, ImageView imageView) {
-        final String imageKey = String.valueOf(resId);
-        final Bitmap bitmap = getBitmapFromMemCache(imageKey);
+    public void loadBitmap(final int resId, final ImageView imageView) {
+        if (!resolveTargetSize(imageView, mTargetSize)) {
+            // Wait for the layout: the image is decoded at the size of the ImageView
+            deferLoad(imageView, new Runnable() {
+                @Override
+                public void run() {
+                    loadBitmap(resId, imageView);
+                }
+            });
+            return;
+        }
+        cancelDeferredLoad();
+
+        final int reqWidth = mTargetSize[0];
+        final int reqHeight = mTargetSize[1];
+        final String imageKey = buildSizedKey(String.valueOf(resId), reqWidth, reqHeight, mCardThumbnail);
+        final Bitmap bitmap = retainFromMemCache(imageKey);
 
         if (bitmap != null) {
-            if (!mCardThumbnail.applyBitmap(imageView,bitmap))
-                imageView.setImageBitmap(bitmap);
-            sendBroadcast();
+            displayCachedBitmap(imageView, bitmap);
+        } else if (CacheUtil.getNegativeCache().contains(String.valueOf(resId))) {
+            displayFailure(imageView);
         } else {
-            if (cancelPotentialWork(resId, imageView)) {
-                final BitmapWorkerTask task = new BitmapWorkerTask(imageView);
-                final AsyncDrawable asyncDrawable =
-                        new AsyncDrawable(getResources(), null, task);
-                imageView.setImageDrawable(asyncDrawable);
-                task.execute(resId);
+            final ResourceRequest request = new ResourceRequest(imageKey, getResources(), resId,
+                    reqWidth, reqHeight);
+            request.setCacheable(!mLoadingErrorResource);
+            if (mLoadingErrorResource)
+                request.setPriority(ThumbnailRequest.PRIORITY_ERROR);
+            setDecodeOptions(request);
+
+            ResourceRequest previewRequest = null;
+            if (isProgressive()) {
+                final int scale = mCardThumbnail.getPreviewScale();
+                previewRequest = new ResourceRequest(imageKey + PREVIEW_KEY_SUFFIX, getResources(), resId,
+                        Math.max(1, reqWidth / scale), Math.max(1, reqHeight / scale));
+                setPreviewOptions(previewRequest);
             }
+            startLoad(imageView, request, previewRequest);
         }
     }
 
-    public void loadBitmap(String url, ImageView imageView) {
-        final String imageKey = url;
-        final Bitmap bitmap = getBitmapFromMemCache(imageKey);
+    public void loadBitmap(final String url, final ImageView imageView) {
+        if (!resolveTargetSize(imageView, mTargetSize)) {
+            // Wait for the layout: the image is decoded at the size of the ImageView
+            deferLoad(imageView, new Runnable() {
+                @Override
+                public void run() {
+                    loadBitmap(url, imageView);
+                }
+            });
+            return;
+        }
+        cancelDeferredLoad();
+
+        final int reqWidth = mTargetSize[0];
+        final int reqHeight = mTargetSize[1];
+        final String imageKey = buildSizedKey(url, reqWidth, reqHeight, mCardThumbnail);
+        if (imageKey == null) {
+            //Nothing to load: display the error resource
+            displayFailure(imageView);
+            return;
+        }
+        final Bitmap bitmap = retainFromMemCache(imageKey);
 
         if (bitmap != null){
-            if (!mCardThumbnail.applyBitmap(imageView,bitmap))
-                imageView.setImageBitmap(bitmap);
-            sendBroadcast();
+            displayCachedBitmap(imageView, bitmap);
+        }else if (CacheUtil.getNegativeCache().contains(url)){
+            displayFailure(imageView);
         }else{
-            if (cancelPotentialWork(url, imageView)) {
-                final BitmapWorkerUrlTask task = new BitmapWorkerUrlTask(imageView);
-                final AsyncDrawableUrl asyncDrawable =
-                        new AsyncDrawableUrl(getResources(), null, task);
-                imageView.setImageDrawable(asyncDrawable);
-                task.execute(url);
+            final UrlRequest request = new UrlRequest(imageKey, getResources(), url,
+                    reqWidth, reqHeight);
+            setDecodeOptions(request);
+
+            UrlRequest previewRequest = null;
+            if (isProgressive()) {
+                // The preview fills the encoded cache: the full decode doesn't fetch again
+                final int scale = mCardThumbnail.getPreviewScale();
+                previewRequest = new UrlRequest(imageKey + PREVIEW_KEY_SUFFIX, getResources(), url,
+                        Math.max(1, reqWidth / scale), Math.max(1, reqHeight / scale));
+                setPreviewOptions(previewRequest);
             }
+            startLoad(imageView, request, previewRequest);
         }
     }
 
     public void loadBitmap(CardThumbnail.CustomSource customSource, ImageView imageView) {
-        final String imageKey = customSource.getTag();
-        final Bitmap bitmap = getBitmapFromMemCache(imageKey);
+        // A custom source produces its bitmap regardless of the size of the ImageView
+        cancelDeferredLoad();
+        final String imageKey = buildCustomSourceKey(customSource, mCardThumbnail);
+        if (imageKey == null) {
+            //Nothing to load: display the error resource
+            displayFailure(imageView);
+            return;
+        }
+        final Bitmap bitmap = retainFromMemCache(imageKey);
 
         if (bitmap != null){
-            if (!mCardThumbnail.applyBitmap(imageView,bitmap))
-                imageView.setImageBitmap(bitmap);
-            sendBroadcast();
+            displayCachedBitmap(imageView, bitmap);
+        }else if (CacheUtil.getNegativeCache().contains(customSource.getTag())){
+            displayFailure(imageView);
         }else{
-            if (cancelPotentialWork(customSource, imageView)) {
-                final BitmapWorkerCustomSourceTask task = new BitmapWorkerCustomSourceTask(imageView);
-                final AsyncDrawableCustomSource asyncDrawable =
-                        new AsyncDrawableCustomSource(getResources(), null, task);
-                imageView.setImageDrawable(asyncDrawable);
-                task.execute(customSource);
+            final CustomSourceRequest request = new CustomSourceRequest(imageKey, customSource);
+            setDecodeOptions(request);
+            startLoad(imageView, request, null);
+        }
+    }
+
+    /**
+     * Starts the load of an image which is not in the memory cache.
+     * In progressive mode the preview is displayed first: from the memory cache if available,
+     * otherwise it is loaded before the full image.
+     *
+     * @param imageView      imageView
+     * @param request        request of the full image
+     * @param previewRequest request of the preview, <code>null</code> to load only the full image
+     */
+    protected void startLoad(ImageView imageView, ThumbnailRequest request, ThumbnailRequest previewRequest) {
+        final ThumbnailLoader loader = ThumbnailLoader.getInstance();
+
+        if (previewRequest != null) {
+            final Bitmap preview = getBitmapFromMemCache(previewRequest.getKey());
+            if (preview != null) {
+                if (loader.load(request, imageView, mLoaderCallback, preview)) {
+                    setDisplayedBitmap(null);
+                    mPreviewBitmap = preview;
+                }
+            } else {
+                mPendingRequest = request;
+                if (loader.load(previewRequest, imageView, mPreviewCallback)) {
+                    setDisplayedBitmap(null);
+                    mPreviewBitmap = null;
+                }
+            }
+            return;
+        }
+
+        if (loader.load(request, imageView, mLoaderCallback)) {
+            setDisplayedBitmap(null);
+            mPreviewBitmap = null;
+        }
+    }
+
+    /**
+     * Indicates if the current load displays a preview first
+     *
+     * @return <code>true</code> in progressive mode, except for the error resource
+     */
+    protected boolean isProgressive() {
+        return mCardThumbnail.isProgressive() && !mLoadingErrorResource;
+    }
+
+    /**
+     * Copies the decode options of the {@link CardThumbnail} to a preview request
+     *
+     * @param previewRequest request
+     */
+    protected void setPreviewOptions(ThumbnailRequest previewRequest) {
+        setDecodeOptions(previewRequest);
+        previewRequest.setPreview(true);
+    }
+
+    /**
+     * Goes straight to the error resource for a source which failed recently,
+     * without retrying it.
+     *
+     * @param imageView imageView
+     */
+    protected void displayFailure(ImageView imageView) {
+        ThumbnailLoader.getInstance().cancel(imageView);
+        imageView.setImageDrawable(null);
+        setDisplayedBitmap(null);
+        mLoaderCallback.onThumbnailLoaded(imageView, null);
+    }
+
+    /**
+     * Copies the decode options of the {@link CardThumbnail} to the request
+     *
+     * @param request request
+     */
+    protected void setDecodeOptions(ThumbnailRequest request) {
+        setDecodeOptions(mCardThumbnail, request);
+    }
+
+    private static void setDecodeOptions(CardThumbnail cardThumbnail, ThumbnailRequest request) {
+        request.setDecodeOptions(cardThumbnail.getEffectiveDecodeConfig(),
+                cardThumbnail.getMaxDecodeDimension(), cardThumbnail.isOpaque());
+        request.setTransformations(cardThumbnail.getTransformations());
+        request.setRegion(cardThumbnail.getCropArea(), cardThumbnail.isCenterCrop());
+    }
+
+    /**
+     * Builds the key of an image decoded at the target size.
+     * Loads, prefetches and cancellations build their keys here, so that they match.
+     *
+     * @param source        url or resource ID
+     * @param width         bucketed target width
+     * @param height        bucketed target height
+     * @param cardThumbnail thumbnail which owns the decode options, <code>null</code> for the default options
+     * @return key
+     */
+    protected static String buildSizedKey(String source, int width, int height, CardThumbnail cardThumbnail) {
+        return ThumbnailLoader.buildKey(source, width, height,
+                cardThumbnail != null ? cardThumbnail.getDecodeSignature() : null);
+    }
+
+    /**
+     * Builds the key of an image produced by a custom source
+     *
+     * @param customSource  custom source
+     * @param cardThumbnail thumbnail which owns the decode options, <code>null</code> for the default options
+     * @return key
+     */
+    protected static String buildCustomSourceKey(CardThumbnail.CustomSource customSource, CardThumbnail cardThumbnail) {
+        return buildCustomSourceKey(customSource, cardThumbnail != null ? cardThumbnail.getDecodeSignature() : null);
+    }
+
+    /**
+     * Builds the key of an image produced by a custom source
+     *
+     * @param customSource custom source
+     * @param signature    signature of the decode options, <code>null</code> for the default options
+     * @return key
+     */
+    protected static String buildCustomSourceKey(CardThumbnail.CustomSource customSource, String signature) {
+        return signature == null || customSource.getTag() == null ?
+                customSource.getTag() : customSource.getTag() + '#' + signature;
+    }
+
+    //--------------------------------------------------------------------------
+    // Prefetch
+    //--------------------------------------------------------------------------
+
+    /**
+     * Warms the memory cache with the image of a {@link CardThumbnail} which is not bound yet.
+     *
+     * @param cardThumbnail thumbnail model
+     * @param res           resources
+     * @param width         bucketed target width
+     * @param height        bucketed target height
+     * @param owner         object which prefetches the image (usually the list)
+     * @return <code>true</code> if the image is cached, in flight or has been queued
+     */
+    public static boolean prefetch(CardThumbnail cardThumbnail, Resources res, int width, int height,
+                                   Object owner) {
+        if (cardThumbnail == null || cardThumbnail.isExternalUsage())
+            return true;
+
+        final String imageKey;
+        final ThumbnailRequest request;
+        if (cardThumbnail.getCustomSource() != null) {
+            imageKey = buildCustomSourceKey(cardThumbnail.getCustomSource(), cardThumbnail);
+            request = new CustomSourceRequest(imageKey, cardThumbnail.getCustomSource());
+        } else if (cardThumbnail.getDrawableResource() > 0) {
+            imageKey = buildSizedKey(String.valueOf(cardThumbnail.getDrawableResource()),
+                    width, height, cardThumbnail);
+            request = new ResourceRequest(imageKey, res, cardThumbnail.getDrawableResource(), width, height);
+        } else if (cardThumbnail.getUrlResource() != null) {
+            imageKey = buildSizedKey(cardThumbnail.getUrlResource(), width, height, cardThumbnail);
+            request = new UrlRequest(imageKey, res, cardThumbnail.getUrlResource(), width, height);
+        } else {
+            return true;
+        }
+
+        final LruCache<String, Bitmap> memoryCache = CacheUtil.getMemoryCache();
+        if (imageKey == null || (memoryCache != null && memoryCache.get(imageKey) != null)
+                || CacheUtil.getNegativeCache().contains(request.getSource()))
+            return true;
+
+        setDecodeOptions(cardThumbnail, request);
+        final int estimatedBytes = width * height * BitmapPool.getBytesPerPixel(request.getDecodeConfig());
+        return ThumbnailLoader.getInstance().prefetch(request, owner, estimatedBytes);
+    }
+
+    //--------------------------------------------------------------------------
+    // Target size
+    //--------------------------------------------------------------------------
+
+    /**
+     * Resolves the size at which the image is decoded, bucketed with
+     * {@link ThumbnailLoader#getBucketedSize(int)}.
+     * </p>
+     * A fixed size in the LayoutParams is used before the layout. A dimension which
+     * stays 0 after the layout (for example with wrap_content) is bounded by the screen.
+     *
+     * @param imageView imageView
+     * @param outSize   array which receives width and height
+     * @return <code>false</code> if the ImageView has to be laid out first
+     */
+    public static boolean resolveTargetSize(ImageView imageView, int[] outSize) {
+        int width = imageView.getWidth() - imageView.getPaddingLeft() - imageView.getPaddingRight();
+        int height = imageView.getHeight() - imageView.getPaddingTop() - imageView.getPaddingBottom();
+
+        final ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        if (width <= 0 && params != null && params.width > 0)
+            width = params.width;
+        if (height <= 0 && params != null && params.height > 0)
+            height = params.height;
+
+        if ((width <= 0 || height <= 0) && imageView.isLayoutRequested())
+            return false;
+
+        final DisplayMetrics metrics = imageView.getResources().getDisplayMetrics();
+        if (width <= 0)
+            width = metrics.widthPixels;
+        if (height <= 0)
+            height = metrics.heightPixels;
+
+        outSize[0] = ThumbnailLoader.getBucketedSize(width);
+        outSize[1] = ThumbnailLoader.getBucketedSize(height);
+        return true;
+    }
+
+    /**
+     * Postpones a load until the ImageView has been laid out.
+     *
+     * @param imageView imageView
+     * @param load      load to run
+     */
+    protected void deferLoad(ImageView imageView, Runnable load) {
+        cancelDeferredLoad();
+
+        ThumbnailLoader.getInstance().cancel(imageView);
+        imageView.setImageDrawable(null);
+        setDisplayedBitmap(null);
+
+        mDeferredLoad = new DeferredLoad(imageView, load);
+    }
+
+    /**
+     * Cancels a load waiting for the layout
+     */
+    protected void cancelDeferredLoad() {
+        if (mDeferredLoad != null) {
+            mDeferredLoad.detach();
+            mDeferredLoad = null;
+        }
+    }
+
+    /**
+     * Runs a load as soon as the ImageView has a size.
+     * It registers itself on the ViewTreeObserver of the ImageView.
+     */
+    protected class DeferredLoad implements ViewTreeObserver.OnPreDrawListener {
+
+        private final ImageView mTarget;
+        private final Runnable mLoad;
+
+        /**
+         * Observer which holds the listener. A detached view returns a new observer on each call.
+         */
+        private final ViewTreeObserver mObserver;
+
+        public DeferredLoad(ImageView target, Runnable load) {
+            mTarget = target;
+            mLoad = load;
+            mObserver = target.getViewTreeObserver();
+            mObserver.addOnPreDrawListener(this);
+        }
+
+        @Override
+        public boolean onPreDraw() {
+            if (mTarget.isLayoutRequested())
+                return true;
+
+            detach();
+            if (mDeferredLoad == this) {
+                mDeferredLoad = null;
+                mLoad.run();
             }
+            return true;
         }
+
+        void detach() {
+            ViewTreeObserver observer = mObserver;
+            if (!observer.isAlive()) {
+                // The observer of a detached view is merged into the observer of the window on attach
+                observer = mTarget.getViewTreeObserver();
+            }
+            if (observer.isAlive())
+                observer.removeOnPreDrawListener(this);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Display
+    //--------------------------------------------------------------------------
+
+    /**
+     * Displays an image found in the memory cache.
+     * When the card is bound again to the image already displayed, the ImageView is left
+     * untouched: setting the same bitmap again would request a new layout.
+     *
+     * @param imageView imageView
+     * @param bitmap    bitmap from {@link #retainFromMemCache(String)}, released once displayed
+     */
+    protected void displayCachedBitmap(ImageView imageView, Bitmap bitmap) {
+        try {
+            final boolean waiting = ThumbnailLoader.getInstance().cancel(imageView);
+            if (waiting || bitmap != mDisplayedBitmap || mPreviewBitmap != null)
+                displayBitmap(imageView, bitmap);
+        } finally {
+            CacheUtil.getBitmapPool().release(bitmap);
+        }
+        notifyThumbnailLoaded(true);
+    }
+
+    /**
+     * Attaches the bitmap to the ImageView
+     *
+     * @param imageView imageView
+     * @param bitmap    bitmap
+     */
+    protected void displayBitmap(ImageView imageView, Bitmap bitmap) {
+        mPreviewBitmap = null;
+        if (!mCardThumbnail.applyBitmap(imageView,bitmap))
+            imageView.setImageBitmap(bitmap);
+        setDisplayedBitmap(bitmap);
+    }
+
+    /**
+     * Replaces the preview with the full image, cross-fading between them
+     *
+     * @param imageView imageView
+     * @param bitmap    full image
+     */
+    protected void crossFadeBitmap(ImageView imageView, Bitmap bitmap) {
+        final Bitmap preview = mPreviewBitmap;
+        mPreviewBitmap = null;
+        if (!mCardThumbnail.applyBitmap(imageView,bitmap)) {
+            final TransitionDrawable transition = new TransitionDrawable(new Drawable[]{
+                    new BitmapDrawable(getResources(), preview),
+                    new BitmapDrawable(getResources(), bitmap)});
+            transition.setCrossFadeEnabled(true);
+            imageView.setImageDrawable(transition);
+            transition.startTransition(CROSS_FADE_DURATION);
+        }
+        setDisplayedBitmap(bitmap);
+    }
+
+    /**
+     * Tracks the bitmap attached to the ImageView, so that the {@link BitmapPool}
+     * doesn't reuse it while it is displayed.
+     *
+     * @param bitmap bitmap, or <code>null</code> if the ImageView doesn't display a cached bitmap
+     */
+    protected void setDisplayedBitmap(Bitmap bitmap) {
+        if (bitmap == mDisplayedBitmap) return;
+
+        final BitmapPool bitmapPool = CacheUtil.getBitmapPool();
+        bitmapPool.release(mDisplayedBitmap);
+        bitmapPool.retain(bitmap);
+        mDisplayedBitmap = bitmap;
     }
 
     protected void addBitmapToMemoryCache(String key, Bitmap bitmap) {
@@ -326,10 +810,42 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface
         return mMemoryCache.get(key);
     }
 
+    /**
+     * Returns the bitmap cached for the key, retained so that the {@link BitmapPool}
+     * can't hand it to another decode before it is displayed.
+     * Pass it to {@link #displayCachedBitmap(ImageView, Bitmap)}, which releases it.
+     *
+     * @param key key
+     * @return the bitmap, or <code>null</code> if it isn't cached
+     */
+    protected Bitmap retainFromMemCache(String key) {
+        final Bitmap bitmap = CacheUtil.getBitmapPool().retainCached(mMemoryCache, key);
+        // Only the lookups of a bind count for the hit rate, not the internal probes
+        CacheUtil.getMetrics().recordMemoryLookup(bitmap != null);
+        return bitmap;
+    }
+
 
 
     public static Bitmap decodeSampledBitmapFromResource(Resources res, int resId,
                                                          int reqWidth, int reqHeight) {
+        return decodeSampledBitmapFromResource(res, resId, reqWidth, reqHeight, null, 0);
+    }
+
+    /**
+     * Decodes a resource sampled for the required size.
+     *
+     * @param res          resources
+     * @param resId        resource ID
+     * @param reqWidth     required width
+     * @param reqHeight    required height
+     * @param config       config, <code>null</code> for the default config
+     * @param maxDimension maximum width and height, 0 means no limit
+     * @return bitmap
+     */
+    public static Bitmap decodeSampledBitmapFromResource(Resources res, int resId,
+                                                         int reqWidth, int reqHeight,
+                                                         Bitmap.Config config, int maxDimension) {
 
         // First decode with inJustDecodeBounds=true to check dimensions
         final BitmapFactory.Options options = new BitmapFactory.Options();
@@ -337,38 +853,370 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface
         BitmapFactory.decodeResource(res, resId, options);
 
         // Calculate inSampleSize
-        options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
+        options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight, maxDimension);
+        if (config != null)
+            options.inPreferredConfig = config;
 
-        // Decode bitmap with inSampleSize set
+        // Decode bitmap with inSampleSize set, reusing a pooled bitmap if one fits
         options.inJustDecodeBounds = false;
+        if (CacheUtil.getBitmapPool().addInBitmapOptions(options)) {
+            try {
+                return BitmapFactory.decodeResource(res, resId, options);
+            } catch (IllegalArgumentException e) {
+                // The pooled bitmap can't hold this image
+                options.inBitmap = null;
+            }
+        }
         return BitmapFactory.decodeResource(res, resId, options);
     }
 
     public static Bitmap decodeSampledBitmapFromResource(Resources res, String resUrl,
                                                          int reqWidth, int reqHeight) {
+        return decodeSampledBitmapFromResource(res, resUrl, reqWidth, reqHeight, null, 0);
+    }
 
+    /**
+     * Decodes the image at the url sampled for the required size.
+     *
+     * @param res          resources
+     * @param resUrl       url
+     * @param reqWidth     required width
+     * @param reqHeight    required height
+     * @param config       config, <code>null</code> for the default config
+     * @param maxDimension maximum width and height, 0 means no limit
+     * @return bitmap, <code>null</code> if the image is not available
+     */
+    public static Bitmap decodeSampledBitmapFromResource(Resources res, String resUrl,
+                                                         int reqWidth, int reqHeight,
+                                                         Bitmap.Config config, int maxDimension) {
         try {
+            return decodeSampledBitmapFromUrl(resUrl, reqWidth, reqHeight, config, maxDimension, null);
+        }catch (IOException ioe){
+            //Url not available
+            Log.w("CardThumbnailView","Error while retrieving image",ioe);
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the image at the url sampled for the required size.
+     *
+     * @param resUrl       url
+     * @param reqWidth     required width
+     * @param reqHeight    required height
+     * @param config       config, <code>null</code> for the default config
+     * @param maxDimension maximum width and height, 0 means no limit
+     * @param request      request charged with the fetch time, can be <code>null</code>
+     * @return bitmap, <code>null</code> if the data is not an image
+     * @throws IOException if the image is not available
+     */
+    protected static Bitmap decodeSampledBitmapFromUrl(String resUrl, int reqWidth, int reqHeight,
+                                                       Bitmap.Config config, int maxDimension,
+                                                       ThumbnailRequest request) throws IOException {
+
+        InputStream in = null;
+        try {
+            // A single fetch feeds both passes: the header is buffered for the bounds pass
+            in = openDecodeStream(resUrl, request);
+            in.mark(DECODE_MARK_LIMIT);
+
             // First decode with inJustDecodeBounds=true to check dimensions
             final BitmapFactory.Options options = new BitmapFactory.Options();
             options.inJustDecodeBounds = true;
-            //BitmapFactory.decodeResource(res, resId, options);
-            BitmapFactory.decodeStream(new URL(resUrl).openStream());
+            BitmapFactory.decodeStream(in, null, options);
 
             // Calculate inSampleSize
-            options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
+            options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight, maxDimension);
+            if (config != null)
+                options.inPreferredConfig = config;
+
+            try {
+                in.reset();
+            } catch (IOException e) {
+                // Header larger than the mark limit: it is served by the encoded or disk cache
+                in.close();
+                in = openDecodeStream(resUrl, request);
+            }
 
-            // Decode bitmap with inSampleSize set
+            // Decode bitmap with inSampleSize set, reusing a pooled bitmap if one fits
             options.inJustDecodeBounds = false;
-            return BitmapFactory.decodeStream(new URL(resUrl).openStream());
+            if (CacheUtil.getBitmapPool().addInBitmapOptions(options)) {
+                try {
+                    return BitmapFactory.decodeStream(in, null, options);
+                } catch (IllegalArgumentException e) {
+                    // The pooled bitmap can't hold this image
+                    options.inBitmap = null;
+                    in.close();
+                    in = openDecodeStream(resUrl, request);
+                }
+            }
+            return BitmapFactory.decodeStream(in, null, options);
 
-        }catch (IOException ioe){
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Region decode
+    //--------------------------------------------------------------------------
+
+    /**
+     * Decodes only a region of the resource, sampled for the required size.
+     *
+     * @param res          resources
+     * @param resId        resource ID
+     * @param cropArea     area in fractions of the image size, <code>null</code> for the whole image
+     * @param centerCrop   <code>true</code> to decode only the center of the area which fills the required size
+     * @param reqWidth     required width
+     * @param reqHeight    required height
+     * @param config       config, <code>null</code> for the default config
+     * @param maxDimension maximum width and height, 0 means no limit
+     * @return bitmap, or <code>null</code> if the region is the whole image or the format is not supported
+     */
+    public static Bitmap decodeRegionFromResource(Resources res, int resId, RectF cropArea, boolean centerCrop,
+                                                  int reqWidth, int reqHeight,
+                                                  Bitmap.Config config, int maxDimension) {
+        InputStream in = null;
+        try {
+            in = res.openRawResource(resId);
+            return decodeRegion(in, cropArea, centerCrop, reqWidth, reqHeight, config, maxDimension);
+        } catch (IOException e) {
+            // Format not supported by the region decoder
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes only a region of the image at the url, sampled for the required size.
+     *
+     * @param resUrl       url
+     * @param cropArea     area in fractions of the image size, <code>null</code> for the whole image
+     * @param centerCrop   <code>true</code> to decode only the center of the area which fills the required size
+     * @param reqWidth     required width
+     * @param reqHeight    required height
+     * @param config       config, <code>null</code> for the default config
+     * @param maxDimension maximum width and height, 0 means no limit
+     * @return bitmap, or <code>null</code> if the region is the whole image or the format is not supported
+     */
+    public static Bitmap decodeRegionFromUrl(String resUrl, RectF cropArea, boolean centerCrop,
+                                             int reqWidth, int reqHeight,
+                                             Bitmap.Config config, int maxDimension) {
+        try {
+            return decodeRegionFromUrl(resUrl, cropArea, centerCrop, reqWidth, reqHeight, config, maxDimension, null);
+        } catch (IOException ioe) {
             //Url not available
-            //ioe.printStackTrace();
-            Log.w("CardThumbnailView","Error while retrieving image",ioe);
+            Log.w("CardThumbnailView", "Error while retrieving image", ioe);
         }
         return null;
     }
 
+    /**
+     * Decodes only a region of the image at the url, charging the fetch time to the request.
+     *
+     * @return bitmap, or <code>null</code> if the region is the whole image or the format is not supported
+     * @throws IOException if the image is not available
+     * @see #decodeRegionFromUrl(String, RectF, boolean, int, int, Bitmap.Config, int)
+     */
+    protected static Bitmap decodeRegionFromUrl(String resUrl, RectF cropArea, boolean centerCrop,
+                                                int reqWidth, int reqHeight,
+                                                Bitmap.Config config, int maxDimension,
+                                                ThumbnailRequest request) throws IOException {
+        // A failed fetch is thrown: only bytes which were fetched can be decoded whole instead
+        final InputStream in = openUrlStream(resUrl, request);
+        try {
+            // The bytes stay in the encoded cache for the fallback decode
+            return decodeRegion(in, cropArea, centerCrop, reqWidth, reqHeight, config, maxDimension);
+        } catch (IOException e) {
+            // Format not supported by the region decoder
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static Bitmap decodeRegion(InputStream in, RectF cropArea, boolean centerCrop,
+                                       int reqWidth, int reqHeight,
+                                       Bitmap.Config config, int maxDimension) throws IOException {
+        final BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(in, false);
+        if (decoder == null)
+            return null;
+
+        try {
+            final Rect region = calculateRegion(decoder.getWidth(), decoder.getHeight(), cropArea,
+                    centerCrop, reqWidth, reqHeight);
+            if (region == null)
+                return null;
+
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.outWidth = region.width();
+            options.outHeight = region.height();
+            options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight, maxDimension);
+            if (config != null)
+                options.inPreferredConfig = config;
+            return decoder.decodeRegion(region, options);
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * Calculates the region of the image to decode
+     *
+     * @param width      width of the image
+     * @param height     height of the image
+     * @param cropArea   area in fractions of the image size, <code>null</code> for the whole image
+     * @param centerCrop <code>true</code> to keep only the center of the area with the aspect ratio of the required size
+     * @param reqWidth   required width
+     * @param reqHeight  required height
+     * @return the region, or <code>null</code> if it is the whole image
+     */
+    protected static Rect calculateRegion(int width, int height, RectF cropArea, boolean centerCrop,
+                                          int reqWidth, int reqHeight) {
+        if (width <= 0 || height <= 0)
+            return null;
+
+        int left = 0, top = 0, right = width, bottom = height;
+        if (cropArea != null) {
+            left = clamp(Math.round(cropArea.left * width), 0, width - 1);
+            top = clamp(Math.round(cropArea.top * height), 0, height - 1);
+            right = clamp(Math.round(cropArea.right * width), left + 1, width);
+            bottom = clamp(Math.round(cropArea.bottom * height), top + 1, height);
+        }
+
+        if (centerCrop && reqWidth > 0 && reqHeight > 0) {
+            final int areaWidth = right - left;
+            final int areaHeight = bottom - top;
+            if ((long) areaWidth * reqHeight > (long) areaHeight * reqWidth) {
+                // Wider than the target: keep the central columns
+                final int cropWidth = Math.max(1, (int) ((long) areaHeight * reqWidth / reqHeight));
+                left += (areaWidth - cropWidth) / 2;
+                right = left + cropWidth;
+            } else {
+                final int cropHeight = Math.max(1, (int) ((long) areaWidth * reqHeight / reqWidth));
+                top += (areaHeight - cropHeight) / 2;
+                bottom = top + cropHeight;
+            }
+        }
+
+        if (left == 0 && top == 0 && right == width && bottom == height)
+            return null;
+        return new Rect(left, top, right, bottom);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Opens a stream on the image at the url.
+     * The disk cache is consulted before the network: see {@link HttpImageFetcher}.
+     *
+     * @param resUrl url
+     * @return stream, to be closed by the caller
+     * @throws IOException if the image is not available
+     */
+    protected static InputStream openUrlStream(String resUrl) throws IOException {
+        return openUrlStream(resUrl, null);
+    }
+
+    /**
+     * Opens a stream on the image at the url.
+     * The time spent fetching the bytes is recorded in {@link ThumbnailMetrics} and charged
+     * to the request, so that it is not counted as decode time.
+     *
+     * @param resUrl  url
+     * @param request request charged with the fetch time, can be <code>null</code>
+     * @return stream, to be closed by the caller
+     * @throws IOException if the image is not available
+     */
+    protected static InputStream openUrlStream(String resUrl, ThumbnailRequest request) throws IOException {
+        final LruCache<String, byte[]> encodedCache = CacheUtil.getEncodedCache();
+        byte[] data = encodedCache.get(resUrl);
+        if (data == null) {
+            final long start = SystemClock.uptimeMillis();
+            try {
+                final InputStream in = HttpImageFetcher.getInstance().openStream(resUrl);
+                try {
+                    data = readFully(in);
+                } finally {
+                    in.close();
+                }
+            } finally {
+                final long millis = SystemClock.uptimeMillis() - start;
+                CacheUtil.getMetrics().recordFetch(resUrl, millis);
+                if (request != null)
+                    request.addFetchMillis(millis);
+            }
+            // A single large image would flush the whole cache
+            if (data.length <= encodedCache.maxSize() / MAX_ENCODED_ENTRY_FRACTION)
+                encodedCache.put(resUrl, data);
+        }
+        return new ByteArrayInputStream(data);
+    }
+
+    /**
+     * Opens a stream on the image at the url which supports {@link InputStream#mark(int)}
+     *
+     * @param resUrl  url
+     * @param request request charged with the fetch time, can be <code>null</code>
+     * @return stream, to be closed by the caller
+     * @throws IOException if the image is not available
+     */
+    private static InputStream openDecodeStream(String resUrl, ThumbnailRequest request) throws IOException {
+        final InputStream in = openUrlStream(resUrl, request);
+        return in.markSupported() ? in : new BufferedInputStream(in, DECODE_BUFFER_SIZE);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(DECODE_BUFFER_SIZE);
+        final byte[] buffer = new byte[DECODE_BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Calculates the sample size for the required size, making sure that the decoded
+     * image doesn't exceed the maximum dimension.
+     *
+     * @param options      options after the bounds pass
+     * @param reqWidth     required width
+     * @param reqHeight    required height
+     * @param maxDimension maximum width and height, 0 means no limit
+     * @return sample size
+     */
+    public static int calculateInSampleSize(
+            BitmapFactory.Options options, int reqWidth, int reqHeight, int maxDimension) {
+        int inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
+
+        if (maxDimension > 0) {
+            // The decoder may round the sample size down to a power of two
+            while (options.outWidth / Integer.highestOneBit(inSampleSize) > maxDimension
+                    || options.outHeight / Integer.highestOneBit(inSampleSize) > maxDimension) {
+                inSampleSize = Integer.highestOneBit(inSampleSize) * 2;
+            }
+        }
+        return inSampleSize;
+    }
+
     public static int calculateInSampleSize(
             BitmapFactory.Options options, int reqWidth, int reqHeight) {
         // Raw height and width of image
@@ -397,304 +1245,342 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface
     // Worker
     //--------------------------------------------------------------------------
 
+    /**
+     * @deprecated the key misses the decode options of the thumbnail:
+     * use {@link #cancelPotentialWork(CardThumbnail, int, ImageView)}
+     */
+    @Deprecated
     public static boolean cancelPotentialWork(int resId, ImageView imageView) {
-        final BitmapWorkerTask bitmapWorkerTask = getBitmapWorkerTask(imageView);
-
-        if (bitmapWorkerTask != null) {
-            final int bitmapWorkerTaskResId = bitmapWorkerTask.resId;
-            if (bitmapWorkerTaskResId != resId) {
-                // Cancel previous task
-                bitmapWorkerTask.cancel(true);
-            } else {
-                // The same work is already in progress
-                return false;
-            }
-        }
-        // No task associated with the ImageView, or an existing task was cancelled
-        return true;
+        return cancelPotentialWork(null, resId, imageView);
     }
 
+    /**
+     * @deprecated the key misses the decode options of the thumbnail:
+     * use {@link #cancelPotentialWork(CardThumbnail, String, ImageView)}
+     */
+    @Deprecated
     public static boolean cancelPotentialWork(String url, ImageView imageView) {
-        final BitmapWorkerUrlTask bitmapWorkerTask = getBitmapWorkerUrlTask(imageView);
-
-        if (bitmapWorkerTask != null) {
-            final String bitmapWorkerTaskResUrl = bitmapWorkerTask.resUrl;
-            if (!bitmapWorkerTaskResUrl.equals(url)) {
-                // Cancel previous task
-                bitmapWorkerTask.cancel(true);
-            } else {
-                // The same work is already in progress
-                return false;
-            }
-        }
-        // No task associated with the ImageView, or an existing task was cancelled
-        return true;
+        return cancelPotentialWork(null, url, imageView);
     }
 
+    /**
+     * @deprecated the key misses the decode options of the thumbnail:
+     * use {@link #cancelPotentialWork(CardThumbnail, CardThumbnail.CustomSource, ImageView)}
+     */
+    @Deprecated
     public static boolean cancelPotentialWork(CardThumbnail.CustomSource customSource, ImageView imageView) {
-        final BitmapWorkerCustomSourceTask bitmapWorkerTask = getBitmapWorkerCustomSourceTask(imageView);
-
-        if (bitmapWorkerTask != null && bitmapWorkerTask.customSource != null) {
-            final CardThumbnail.CustomSource bitmapWorkerTaskCustomSource = bitmapWorkerTask.customSource;
-            if (bitmapWorkerTaskCustomSource.getTag() != null) {
-                if (!bitmapWorkerTaskCustomSource.getTag().equals(customSource.getTag())) {
-                    // Cancel previous task
-                    bitmapWorkerTask.cancel(true);
-                } else {
-                    // The same work is already in progress
-                    return false;
-                }
-            }
-        }
-        // No task associated with the ImageView, or an existing task was cancelled
-        return true;
+        return cancelPotentialWork(null, customSource, imageView);
     }
 
-    protected static BitmapWorkerTask getBitmapWorkerTask(ImageView imageView) {
-        if (imageView != null) {
-            final Drawable drawable = imageView.getDrawable();
-            if (drawable instanceof AsyncDrawable) {
-                final AsyncDrawable asyncDrawable = (AsyncDrawable) drawable;
-                return asyncDrawable.getBitmapWorkerTask();
-            }
-        }
-        return null;
+    /**
+     * Cancels the work associated with the ImageView if it is loading a different image.
+     * The key is built as {@link #loadBitmap(int, ImageView)} builds it.
+     *
+     * @param cardThumbnail thumbnail which owns the decode options, <code>null</code> for the default options
+     * @param resId         resource ID requested now
+     * @param imageView     imageView
+     * @return <code>false</code> if the same work is already in progress
+     */
+    public static boolean cancelPotentialWork(CardThumbnail cardThumbnail, int resId, ImageView imageView) {
+        return cancelPotentialSizedWork(cardThumbnail, String.valueOf(resId), imageView);
     }
 
-    protected static BitmapWorkerUrlTask getBitmapWorkerUrlTask(ImageView imageView) {
-        if (imageView != null) {
-            final Drawable drawable = imageView.getDrawable();
-            if (drawable instanceof AsyncDrawableUrl) {
-                final AsyncDrawableUrl asyncDrawable = (AsyncDrawableUrl) drawable;
-                return asyncDrawable.getBitmapWorkerUrlTask();
-            }
-        }
-        return null;
+    /**
+     * Cancels the work associated with the ImageView if it is loading a different image.
+     * The key is built as {@link #loadBitmap(String, ImageView)} builds it.
+     *
+     * @param cardThumbnail thumbnail which owns the decode options, <code>null</code> for the default options
+     * @param url           url requested now
+     * @param imageView     imageView
+     * @return <code>false</code> if the same work is already in progress
+     */
+    public static boolean cancelPotentialWork(CardThumbnail cardThumbnail, String url, ImageView imageView) {
+        return cancelPotentialSizedWork(cardThumbnail, url, imageView);
     }
 
-    protected static BitmapWorkerCustomSourceTask getBitmapWorkerCustomSourceTask(ImageView imageView) {
-        if (imageView != null) {
-            final Drawable drawable = imageView.getDrawable();
-            if (drawable instanceof AsyncDrawableCustomSource) {
-                final AsyncDrawableCustomSource asyncDrawable = (AsyncDrawableCustomSource) drawable;
-                return asyncDrawable.getBitmapWorkerCustomSourceTask();
-            }
-        }
-        return null;
+    /**
+     * Cancels the work associated with the ImageView if it is loading a different image.
+     * The key is built as {@link #loadBitmap(CardThumbnail.CustomSource, ImageView)} builds it.
+     *
+     * @param cardThumbnail thumbnail which owns the decode options, <code>null</code> for the default options
+     * @param customSource  custom source requested now
+     * @param imageView     imageView
+     * @return <code>false</code> if the same work is already in progress
+     */
+    public static boolean cancelPotentialWork(CardThumbnail cardThumbnail, CardThumbnail.CustomSource customSource,
+                                              ImageView imageView) {
+        return ThumbnailLoader.getInstance().cancelPotentialWork(
+                buildCustomSourceKey(customSource, cardThumbnail), imageView);
     }
 
-    class BitmapWorkerTask extends AsyncTask<Integer, Void, Bitmap> {
-        private final WeakReference<ImageView> imageViewReference;
-        private int resId = 0;
-
-        public BitmapWorkerTask(ImageView imageView) {
-            // Use a WeakReference to ensure the ImageView can be garbage collected
-            imageViewReference = new WeakReference<ImageView>(imageView);
+    private static boolean cancelPotentialSizedWork(CardThumbnail cardThumbnail, String source, ImageView imageView) {
+        final int[] targetSize = new int[2];
+        if (!resolveTargetSize(imageView, targetSize)) {
+            // Nothing can be in progress before the layout
+            ThumbnailLoader.getInstance().cancel(imageView);
+            return true;
         }
+        return ThumbnailLoader.getInstance().cancelPotentialWork(
+                buildSizedKey(source, targetSize[0], targetSize[1], cardThumbnail), imageView);
+    }
 
-        // Decode image in background.
-        @Override
-        protected Bitmap doInBackground(Integer... params) {
-            resId = params[0];
-            ImageView thumbnail = imageViewReference.get();
-            Bitmap bitmap = decodeSampledBitmapFromResource(getResources(), resId, thumbnail.getWidth(),
-                    thumbnail.getHeight());
-            if (bitmap!=null){
-                addBitmapToMemoryCache(String.valueOf(params[0]), bitmap);
-                return bitmap;
-            }else{
-                return (Bitmap)null;
-            }
-
-        }
+    /**
+     * Receives the results from the {@link ThumbnailLoader}
+     */
+    protected final ThumbnailLoader.Callback mLoaderCallback = new ThumbnailLoader.Callback() {
 
-        // Once complete, see if ImageView is still around and set bitmap.
+        // Once complete, the loader checks if ImageView is still around and waiting for this bitmap.
         @Override
-        protected void onPostExecute(Bitmap bitmap) {
-            if (isCancelled()) {
-                bitmap = null;
-            }
-
-            if (imageViewReference != null && bitmap != null) {
-                final ImageView imageView = imageViewReference.get();
-                final BitmapWorkerTask bitmapWorkerTask =
-                        getBitmapWorkerTask(imageView);
-                if (this == bitmapWorkerTask && imageView != null) {
-                    if (!mCardThumbnail.applyBitmap(imageView,bitmap))
-                        imageView.setImageBitmap(bitmap);
-                    sendBroadcast();
-                    mLoadingErrorResource=false;
-                }
+        public void onThumbnailLoaded(ImageView imageView, Bitmap bitmap) {
+            if (bitmap != null) {
+                if (mPreviewBitmap != null)
+                    crossFadeBitmap(imageView, bitmap);
+                else
+                    displayBitmap(imageView, bitmap);
+                notifyThumbnailLoaded(true);
+                mLoadingErrorResource=false;
             }else{
-                sendBroadcast(false);
+                mPreviewBitmap = null;
+                notifyThumbnailLoaded(false);
                 if (mCardThumbnail!=null && mCardThumbnail.getErrorResourceId()!=0){
                     if (!mLoadingErrorResource){
                         //To avoid a loop
+                        mLoadingErrorResource=true;
                         loadBitmap(mCardThumbnail.getErrorResourceId(), mImageView);
                     }
-                    mLoadingErrorResource=true;
                 }
             }
         }
-    }
-
-    class BitmapWorkerUrlTask extends AsyncTask<String, Void, Bitmap> {
-        private final WeakReference<ImageView> imageViewReference;
-        private String resUrl = "";
+    };
 
-        public BitmapWorkerUrlTask(ImageView imageView) {
-            // Use a WeakReference to ensure the ImageView can be garbage collected
-            imageViewReference = new WeakReference<ImageView>(imageView);
-        }
+    /**
+     * Receives the previews from the {@link ThumbnailLoader} and starts the full image
+     */
+    protected final ThumbnailLoader.Callback mPreviewCallback = new ThumbnailLoader.Callback() {
 
-        // Decode image in background.
-        @Override
-        protected Bitmap doInBackground(String... params) {
-            resUrl = params[0];
-            ImageView thumbnail = imageViewReference.get();
-            Bitmap bitmap = decodeSampledBitmapFromResource(getResources(), resUrl, thumbnail.getWidth(),
-                    thumbnail.getHeight());
-            if (bitmap!=null){
-                addBitmapToMemoryCache(String.valueOf(params[0]), bitmap);
-                return bitmap;
-            }else
-                return (Bitmap) null;
-        }
-
-        // Once complete, see if ImageView is still around and set bitmap.
         @Override
-        protected void onPostExecute(Bitmap bitmap) {
-            if (isCancelled()) {
-                bitmap = null;
+        public void onThumbnailLoaded(ImageView imageView, Bitmap bitmap) {
+            final ThumbnailRequest request = mPendingRequest;
+            mPendingRequest = null;
+            if (bitmap == null || request == null) {
+                // The source is not available: the full image would fail too
+                mLoaderCallback.onThumbnailLoaded(imageView, bitmap);
+                return;
             }
 
-            if (imageViewReference != null && bitmap != null) {
-                final ImageView imageView = imageViewReference.get();
-                final BitmapWorkerUrlTask bitmapWorkerTask =
-                        getBitmapWorkerUrlTask(imageView);
-                if (this == bitmapWorkerTask && imageView != null) {
-                    if (!mCardThumbnail.applyBitmap(imageView,bitmap))
-                        imageView.setImageBitmap(bitmap);
-                    sendBroadcast();
-                    mLoadingErrorResource=false;
-                }
-            }else{
-                sendBroadcast(false);
-                if (mCardThumbnail!=null && mCardThumbnail.getErrorResourceId()!=0){
-                    if (!mLoadingErrorResource){
-                        //To avoid a loop
-                        loadBitmap(mCardThumbnail.getErrorResourceId(), mImageView);
-                    }
-                    mLoadingErrorResource=true;
-                }
-            }
+            // The preview stays on screen, as placeholder of the full image
+            if (ThumbnailLoader.getInstance().load(request, imageView, mLoaderCallback, bitmap))
+                mPreviewBitmap = bitmap;
         }
-    }
-
-    class BitmapWorkerCustomSourceTask extends AsyncTask<CardThumbnail.CustomSource, Void, Bitmap> {
-        private final WeakReference<ImageView> imageViewReference;
-        private CardThumbnail.CustomSource customSource = null;
-
-        public BitmapWorkerCustomSourceTask(ImageView imageView) {
-            // Use a WeakReference to ensure the ImageView can be garbage collected
-            imageViewReference = new WeakReference<ImageView>(imageView);
+    };
+
+    static class ResourceRequest extends ThumbnailRequest {
+        private final Resources mResources;
+        private final int resId;
+        private final int reqWidth;
+        private final int reqHeight;
+
+        public ResourceRequest(String key, Resources resources, int resId, int reqWidth, int reqHeight) {
+            super(key, String.valueOf(resId));
+            setTargetSize(reqWidth, reqHeight);
+            this.mResources = resources;
+            this.resId = resId;
+            this.reqWidth = reqWidth;
+            this.reqHeight = reqHeight;
         }
 
         // Decode image in background.
         @Override
-        protected Bitmap doInBackground(CardThumbnail.CustomSource... params) {
-            customSource = params[0];
-            ImageView thumbnail = imageViewReference.get();
-            Bitmap bitmap = customSource.getBitmap();
-            if (bitmap!=null){
-                addBitmapToMemoryCache(customSource.getTag(), bitmap);
-                return bitmap;
-            }else{
-                return (Bitmap)null;
-            }
+        public Bitmap decode() {
+            Bitmap bitmap = null;
+            if (hasRegion())
+                bitmap = decodeRegionFromResource(mResources, resId, mCropArea, mCenterCrop,
+                        reqWidth, reqHeight, mDecodeConfig, mMaxDimension);
+            if (bitmap == null)
+                bitmap = decodeSampledBitmapFromResource(mResources, resId, reqWidth, reqHeight,
+                        mDecodeConfig, mMaxDimension);
+            // A resource which can't be decoded now won't be decoded later
+            if (bitmap == null)
+                setFailure(FAILURE_UNDECODABLE);
+            // A preview can stay on screen under a cross-fade: it is never reused
+            if (!mPreview)
+                CacheUtil.getBitmapPool().markReusable(bitmap);
+            return applyOpaque(bitmap);
+        }
+    }
 
+    static class UrlRequest extends ThumbnailRequest {
+        private final Resources mResources;
+        private final String resUrl;
+        private final int reqWidth;
+        private final int reqHeight;
+
+        public UrlRequest(String key, Resources resources, String resUrl, int reqWidth, int reqHeight) {
+            super(key, resUrl);
+            setTargetSize(reqWidth, reqHeight);
+            this.mResources = resources;
+            this.resUrl = resUrl;
+            this.reqWidth = reqWidth;
+            this.reqHeight = reqHeight;
         }
 
-        // Once complete, see if ImageView is still around and set bitmap.
+        // Decode image in background.
         @Override
-        protected void onPostExecute(Bitmap bitmap) {
-            if (isCancelled()) {
-                bitmap = null;
+        public Bitmap decode() {
+            Bitmap bitmap = null;
+            try {
+                if (hasRegion())
+                    bitmap = decodeRegionFromUrl(resUrl, mCropArea, mCenterCrop,
+                            reqWidth, reqHeight, mDecodeConfig, mMaxDimension, this);
+                // The region decoder doesn't support the bytes: decode the whole image
+                if (bitmap == null)
+                    bitmap = decodeUrl();
+            } catch (HttpImageFetcher.HttpStatusException e) {
+                // 4xx: the image doesn't exist. 5xx: the server may recover
+                if (e.isClientError())
+                    setFailure(FAILURE_NOT_FOUND);
+                Log.w("CardThumbnailView", "Error while retrieving image", e);
+            } catch (IOException e) {
+                // Timeout or no network: retried on the next load
+                Log.w("CardThumbnailView", "Error while retrieving image", e);
             }
+            // A preview can stay on screen under a cross-fade: it is never reused
+            if (!mPreview)
+                CacheUtil.getBitmapPool().markReusable(bitmap);
+            return applyOpaque(bitmap);
+        }
 
-            if (imageViewReference != null && bitmap != null) {
-                final ImageView imageView = imageViewReference.get();
-                final BitmapWorkerCustomSourceTask bitmapWorkerTask =
-                        getBitmapWorkerCustomSourceTask(imageView);
-                if (this == bitmapWorkerTask && imageView != null) {
-                    if (!mCardThumbnail.applyBitmap(imageView,bitmap))
-                        imageView.setImageBitmap(bitmap);
-                    sendBroadcast();
-                    mLoadingErrorResource=false;
-                }
-            }else{
-                sendBroadcast(false);
-                if (mCardThumbnail!=null && mCardThumbnail.getErrorResourceId()!=0){
-                    if (!mLoadingErrorResource){
-                        //To avoid a loop
-                        loadBitmap(mCardThumbnail.getErrorResourceId(), mImageView);
-                    }
-                    mLoadingErrorResource=true;
-                }
-            }
+        /**
+         * Decodes the whole image, recording an image which can't be decoded
+         */
+        private Bitmap decodeUrl() throws IOException {
+            final Bitmap bitmap = decodeSampledBitmapFromUrl(resUrl, reqWidth, reqHeight,
+                    mDecodeConfig, mMaxDimension, this);
+            if (bitmap == null)
+                setFailure(FAILURE_UNDECODABLE);
+            return bitmap;
         }
     }
 
+    static class CustomSourceRequest extends ThumbnailRequest {
+        private final CardThumbnail.CustomSource customSource;
 
-    static class AsyncDrawable extends BitmapDrawable {
-        private final WeakReference<BitmapWorkerTask> bitmapWorkerTaskReference;
-
-        public AsyncDrawable(Resources res, Bitmap bitmap,
-                             BitmapWorkerTask bitmapWorkerTask) {
-            super(res, bitmap);
-            bitmapWorkerTaskReference =
-                    new WeakReference<BitmapWorkerTask>(bitmapWorkerTask);
-        }
-
-        public BitmapWorkerTask getBitmapWorkerTask() {
-            return bitmapWorkerTaskReference.get();
+        public CustomSourceRequest(String key, CardThumbnail.CustomSource customSource) {
+            super(key, customSource.getTag());
+            this.customSource = customSource;
         }
-    }
 
-    static class AsyncDrawableUrl extends BitmapDrawable {
-        private final WeakReference<BitmapWorkerUrlTask> bitmapWorkerTaskReference;
+        // Decode image in background.
+        @Override
+        public Bitmap decode() {
+            final BitmapPool bitmapPool = CacheUtil.getBitmapPool();
+            if (customSource instanceof CardThumbnail.PooledCustomSource) {
+                final Bitmap bitmap = ((CardThumbnail.PooledCustomSource) customSource).getBitmap(bitmapPool);
+                if (bitmap == null)
+                    setFailure(FAILURE_NOT_FOUND);
+                bitmapPool.markReusable(bitmap);
+                return applyOpaque(applyDecodeOptions(bitmap));
+            }
 
-        public AsyncDrawableUrl(Resources res, Bitmap bitmap,
-                             BitmapWorkerUrlTask bitmapWorkerTask) {
-            super(res, bitmap);
-            bitmapWorkerTaskReference =
-                    new WeakReference<BitmapWorkerUrlTask>(bitmapWorkerTask);
+            final Bitmap bitmap = customSource.getBitmap();
+            if (bitmap == null)
+                setFailure(FAILURE_NOT_FOUND);
+            return adopt(bitmap);
         }
 
-        public BitmapWorkerUrlTask getBitmapWorkerUrlTask() {
-            return bitmapWorkerTaskReference.get();
+        @Override
+        public Object getBatchKey() {
+            if (customSource instanceof CardThumbnail.BatchCustomSource)
+                return ((CardThumbnail.BatchCustomSource) customSource).getBatchProducer();
+            return null;
         }
-    }
 
-    static class AsyncDrawableCustomSource extends BitmapDrawable {
-        private final WeakReference<BitmapWorkerCustomSourceTask> bitmapWorkerTaskReference;
+        // Decode the images of the batch in background.
+        @Override
+        public Bitmap[] decodeBatch(List<ThumbnailRequest> requests) {
+            final CardThumbnail.BatchBitmapProducer producer = (CardThumbnail.BatchBitmapProducer) getBatchKey();
 
-        public AsyncDrawableCustomSource(Resources res, Bitmap bitmap,
-                                BitmapWorkerCustomSourceTask bitmapWorkerTask) {
-            super(res, bitmap);
-            bitmapWorkerTaskReference =
-                    new WeakReference<BitmapWorkerCustomSourceTask>(bitmapWorkerTask);
+            // The same tag can be requested with different signatures
+            final LinkedHashSet<String> tags = new LinkedHashSet<String>();
+            for (ThumbnailRequest request : requests) {
+                tags.add(((CustomSourceRequest) request).customSource.getTag());
+            }
+            final Map<String, Bitmap> produced = producer.getBitmaps(new ArrayList<String>(tags));
+
+            final Bitmap[] bitmaps = new Bitmap[requests.size()];
+            for (int i = 0; i < bitmaps.length; i++) {
+                final CustomSourceRequest request = (CustomSourceRequest) requests.get(i);
+                final Bitmap bitmap = produced != null ? produced.get(request.customSource.getTag()) : null;
+                if (bitmap == null)
+                    request.setFailure(FAILURE_NOT_FOUND);
+                bitmaps[i] = request.adopt(bitmap);
+            }
+            return bitmaps;
         }
 
-        public BitmapWorkerCustomSourceTask getBitmapWorkerCustomSourceTask() {
-            return bitmapWorkerTaskReference.get();
+        /**
+         * Applies the decode options to a bitmap owned by the custom source
+         *
+         * @param bitmap bitmap
+         * @return the bitmap, or a copy owned by the library
+         */
+        private Bitmap adopt(Bitmap bitmap) {
+            final Bitmap converted = applyDecodeOptions(bitmap);
+            if (converted != bitmap) {
+                // The copy is owned by the library, the original by the custom source
+                CacheUtil.getBitmapPool().markReusable(converted);
+                return applyOpaque(converted);
+            }
+            return bitmap;
         }
-    }
 
+        /**
+         * Scales and converts the bitmap produced by the custom source to the decode options
+         *
+         * @param bitmap bitmap
+         * @return the same bitmap if it already matches the options, a copy otherwise
+         */
+        private Bitmap applyDecodeOptions(Bitmap bitmap) {
+            if (bitmap == null) return null;
+
+            Bitmap result = bitmap;
+            final int width = bitmap.getWidth();
+            final int height = bitmap.getHeight();
+            if (mMaxDimension > 0 && (width > mMaxDimension || height > mMaxDimension)) {
+                final float scale = Math.min((float) mMaxDimension / width, (float) mMaxDimension / height);
+                result = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(width * scale)),
+                        Math.max(1, Math.round(height * scale)), true);
+            }
+            if (result.getConfig() != null && result.getConfig() != mDecodeConfig) {
+                final Bitmap copy = result.copy(mDecodeConfig, true);
+                if (copy != null)
+                    result = copy;
+            }
+            return result;
+        }
+    }
     //--------------------------------------------------------------------------
     // Broadcast
     //--------------------------------------------------------------------------
 
+    /**
+     * Notifies the {@link CardThumbnail.OnThumbnailLoadedListener} synchronously,
+     * and sends the broadcast if the compatibility mode is enabled.
+     *
+     * @param result <code>true</code> if the image has been loaded
+     */
+    protected void notifyThumbnailLoaded(boolean result) {
+        if (mCardThumbnail == null) return;
+
+        final CardThumbnail.OnThumbnailLoadedListener listener = mCardThumbnail.getOnThumbnailLoadedListener();
+        if (listener != null) {
+            final String cardId = mCardThumbnail.getParentCard() != null ?
+                    mCardThumbnail.getParentCard().getId() : null;
+            listener.onThumbnailLoaded(mCardThumbnail, cardId, result, mLoadingErrorResource);
+        }
+        sendBroadcast(result);
+    }
+
     /**
      * Send a successful broadcast when image is downloaded
      */
@@ -771,5 +1657,14 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface
         this.mForceReplaceInnerLayout = forceReplaceInnerLayout;
     }
 
+    /**
+     * Returns the ImageView which displays the thumbnail
+     *
+     * @return imageView
+     */
+    public ImageView getImageView() {
+        return mImageView;
+    }
+
 
 }
@@ -0,0 +1,258 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.view.helper;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Expand and collapse animations of a card inside a list, which don't lay out the list on each frame.
+ * </p>
+ * The list is laid out once at the final size: when the animation starts for an expand, when it
+ * ends for a collapse. In between, the card is clipped to its animated height and the following
+ * children of the list are translated to stay attached to it. The scroll which brings the expanded
+ * card into view is computed once, at the end.
+ * </p>
+ * The children below the attached ones are laid out only at the end: the animations run only if
+ * the translated children still fill the list, otherwise a growing strip would open at the bottom.
+ * If the list scrolls or recycles the children in the meantime, the animation jumps to the end.
+ * </p>
+ * It requires {@link View#setClipBounds(Rect)}: check {@link #isSupported()}.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public final class ExpandClipAnimator {
+
+    /**
+     * Scrolls the list to show an expanded card
+     */
+    public interface Scroller {
+
+        /**
+         * Scrolls the list
+         *
+         * @param distance distance in pixels, positive to move the content up
+         */
+        void scrollBy(int distance);
+    }
+
+    private ExpandClipAnimator() {
+    }
+
+    /**
+     * Indicates if the animations are available on this device
+     *
+     * @return <code>true</code> if the platform supports the clip bounds
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    /**
+     * Expands the layout
+     *
+     * @param expandingLayout layout to expand
+     * @param child           direct child of the list which contains the layout
+     * @param list            list
+     * @param scroller        scroller invoked at the end if the card isn't fully visible, can be <code>null</code>
+     * @param listener        listener of the animation, can be <code>null</code>
+     * @param fallback        animation run instead, from the first layout at the final size, if the
+     *                        children would not fill the list. It must hide the layout before the next draw.
+     */
+    public static void animateExpanding(final View expandingLayout, final View child, final ViewGroup list,
+                                        final Scroller scroller, final Animator.AnimatorListener listener,
+                                        final Runnable fallback) {
+        //The single layout at the final size
+        expandingLayout.setVisibility(View.VISIBLE);
+
+        list.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                list.getViewTreeObserver().removeOnPreDrawListener(this);
+
+                final int height = expandingLayout.getHeight();
+                if (fallback != null && !fillsList(list, height)) {
+                    //The layout recycled the children pushed out of the list: skip this frame
+                    fallback.run();
+                    return false;
+                }
+
+                final List<View> followers = findFollowers(child, list);
+                final ValueAnimator animator = createClipAnimator(child, list, followers, height, true);
+                animator.addListener(new AnimatorListenerAdapter() {
+                    @Override
+                    public void onAnimationEnd(Animator animation) {
+                        reset(child, followers);
+                        if (scroller != null)
+                            scrollIntoView(child, list, scroller);
+                    }
+                });
+                if (listener != null)
+                    animator.addListener(listener);
+
+                //Draw this frame with the layout still hidden
+                apply(child, followers, new Rect(), height);
+                animator.start();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Collapses the layout
+     *
+     * @param expandingLayout layout to collapse
+     * @param child           direct child of the list which contains the layout
+     * @param list            list
+     * @param listener        listener of the animation, can be <code>null</code>
+     * @return <code>false</code> if the animation can't run because the children would not fill the list:
+     * the caller has to animate the height of the layout
+     */
+    public static boolean animateCollapsing(final View expandingLayout, final View child, final ViewGroup list,
+                                            final Animator.AnimatorListener listener) {
+        final int height = expandingLayout.getHeight();
+        if (!fillsList(list, height))
+            return false;
+
+        final List<View> followers = findFollowers(child, list);
+        final ValueAnimator animator = createClipAnimator(child, list, followers, height, false);
+        animator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                //The single layout at the final size: it happens before the next draw
+                expandingLayout.setVisibility(View.GONE);
+                reset(child, followers);
+            }
+        });
+        if (listener != null)
+            animator.addListener(listener);
+        animator.start();
+        return true;
+    }
+
+    /**
+     * Indicates if the attached children, moved up by the hidden height, still reach the bottom of the list
+     *
+     * @param hidden height of the hidden part, in pixels
+     */
+    private static boolean fillsList(ViewGroup list, int hidden) {
+        int bottom = 0;
+        for (int i = 0; i < list.getChildCount(); i++) {
+            bottom = Math.max(bottom, list.getChildAt(i).getBottom());
+        }
+        return bottom - hidden >= list.getHeight() - list.getPaddingBottom();
+    }
+
+    /**
+     * Returns the children of the list below the card
+     */
+    private static List<View> findFollowers(View child, ViewGroup list) {
+        final int bottom = child.getBottom();
+        final List<View> followers = new ArrayList<View>();
+        for (int i = 0; i < list.getChildCount(); i++) {
+            final View view = list.getChildAt(i);
+            if (view != child && view.getTop() >= bottom)
+                followers.add(view);
+        }
+        return followers;
+    }
+
+    private static ValueAnimator createClipAnimator(final View child, final ViewGroup list, final List<View> followers,
+                                                    final int height, final boolean expanding) {
+        final Rect clip = new Rect();
+        final int top = child.getTop();
+        final ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            private boolean mDetached = false;
+
+            @Override
+            public void onAnimationUpdate(ValueAnimator valueAnimator) {
+                if (mDetached)
+                    return;
+                if (isMoved(child, list, top, followers)) {
+                    //The views may show other cards now: they take their final state
+                    mDetached = true;
+                    reset(child, followers);
+                    valueAnimator.end();
+                    return;
+                }
+                final float fraction = valueAnimator.getAnimatedFraction();
+                apply(child, followers, clip, Math.round(height * (expanding ? 1f - fraction : fraction)));
+            }
+        });
+        return animator;
+    }
+
+    /**
+     * Indicates if the list scrolled or recycled the card or one of the following children
+     */
+    private static boolean isMoved(View child, ViewGroup list, int top, List<View> followers) {
+        if (child.getParent() != list || child.getTop() != top)
+            return true;
+        for (int i = 0; i < followers.size(); i++) {
+            if (followers.get(i).getParent() != list)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hides the bottom of the card and moves the following children up
+     *
+     * @param hidden height of the hidden part, in pixels
+     */
+    private static void apply(View child, List<View> followers, Rect clip, int hidden) {
+        clip.set(0, 0, child.getWidth(), child.getHeight() - hidden);
+        child.setClipBounds(clip);
+        for (int i = 0; i < followers.size(); i++) {
+            followers.get(i).setTranslationY(-hidden);
+        }
+    }
+
+    private static void reset(View child, List<View> followers) {
+        child.setClipBounds(null);
+        for (int i = 0; i < followers.size(); i++) {
+            followers.get(i).setTranslationY(0);
+        }
+    }
+
+    /**
+     * Scrolls the list, once, so that the bottom of the card is visible without hiding its top
+     */
+    private static void scrollIntoView(View child, ViewGroup list, Scroller scroller) {
+        final int listHeight = list.getHeight();
+        final int bottom = child.getBottom();
+        if (bottom > listHeight) {
+            final int top = child.getTop();
+            if (top > 0)
+                scroller.scrollBy(Math.min(bottom - listHeight + list.getPaddingBottom(), top));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.view.helper;
+
+import android.util.LruCache;
+import android.util.SparseIntArray;
+import android.view.View;
+
+/**
+ * Heights of the expand layouts, measured when an expand is requested.
+ * </p>
+ * The heights are cached by card id and available width, so that a card expanded and
+ * collapsed again isn't measured again. A height is kept until the expand content of the
+ * card is set up again by a bind. Cards without an id are measured on each expand.
+ * </p>
+ * Methods have to be called from the main thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public final class ExpandHeightCache {
+
+    /**
+     * Maximum number of cards in the cache
+     */
+    private static final int MAX_CARDS = 256;
+
+    /**
+     * Heights by card id, then by available width
+     */
+    private static final LruCache<String, SparseIntArray> sHeights =
+            new LruCache<String, SparseIntArray>(MAX_CARDS);
+
+    private ExpandHeightCache() {
+    }
+
+    /**
+     * Returns the height of the expand layout, measuring it only if it isn't cached.
+     * The parent of the layout has to be measured.
+     *
+     * @param expandLayout expand layout
+     * @param cardId       id of the card, <code>null</code> to measure without caching
+     * @return height in pixels
+     */
+    public static int getHeight(View expandLayout, String cardId) {
+        final View parent = (View) expandLayout.getParent();
+        final int width = parent.getMeasuredWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+
+        SparseIntArray heights = cardId != null ? sHeights.get(cardId) : null;
+        if (heights != null) {
+            final int height = heights.get(width, -1);
+            if (height >= 0)
+                return height;
+        }
+
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.AT_MOST);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        expandLayout.measure(widthSpec, heightSpec);
+        final int height = expandLayout.getMeasuredHeight();
+
+        if (cardId != null) {
+            if (heights == null) {
+                heights = new SparseIntArray(2);
+                sHeights.put(cardId, heights);
+            }
+            heights.put(width, height);
+        }
+        return height;
+    }
+
+    /**
+     * Forgets the heights of a card, for example when its expand content changes
+     *
+     * @param cardId id of the card, <code>null</code> does nothing
+     */
+    public static void invalidate(String cardId) {
+        if (cardId != null)
+            sHeights.remove(cardId);
+    }
+
+    /**
+     * Forgets all the heights, for example after a configuration change
+     */
+    public static void clear() {
+        sHeights.evictAll();
+    }
+}
@@ -109,6 +109,15 @@ public class SwipeDismissViewTouchListener implements View.OnTouchListener {
         swipeDistanceDivisor =  cardView.getContext().getResources().getInteger(R.integer.list_card_swipe_distance_divisor);
     }
 
+    /**
+     * Points the listener at another card, when the card view is bound again.
+     *
+     * @param card Card
+     */
+    public void setCard(Card card) {
+        mToken = card;
+    }
+
     /**
      * Enables or disables (pauses or resumes) watching for swipe-to-dismiss
      * gestures.
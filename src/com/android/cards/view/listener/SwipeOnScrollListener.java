@@ -20,12 +20,17 @@ package com.android.cards.view.listener;
 
 import android.widget.AbsListView;
 
+import com.android.cards.internal.thumbnail.ThumbnailLoader;
+
 /**
  * Returns an {@link android.widget.AbsListView.OnScrollListener} to be added to the {@link
  * android.widget.ListView} using {@link android.widget.ListView#setOnScrollListener(android.widget.AbsListView.OnScrollListener)}.
  * If a scroll listener is already assigned, the caller should still pass scroll changes through
  * to this listener. This will ensure that this {@link SwipeDismissListViewTouchListener} is
  * paused during list view scrolling.</p>
+ * It also pauses the {@link com.android.cards.internal.thumbnail.ThumbnailLoader} while the list
+ * is flinging, so that cards bound during a fling don't start decodes which are cancelled a few
+ * frames later.</p>
  *
  * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
  * @see SwipeDismissListViewTouchListener
@@ -43,6 +48,12 @@ public class SwipeOnScrollListener implements AbsListView.OnScrollListener {
         if (mTouchListener != null) {
             mTouchListener.setEnabled(scrollState != AbsListView.OnScrollListener.SCROLL_STATE_TOUCH_SCROLL);
         }
+
+        if (scrollState == AbsListView.OnScrollListener.SCROLL_STATE_FLING) {
+            ThumbnailLoader.getInstance().pause(view);
+        } else {
+            ThumbnailLoader.getInstance().resume(view);
+        }
     }
 
     @Override
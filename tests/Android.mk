@@ -0,0 +1,36 @@
+# Copyright (C) 2014 SlimRoms Project
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+LOCAL_PATH := $(call my-dir)
+include $(CLEAR_VARS)
+
+LOCAL_MODULE_TAGS := tests
+
+LOCAL_STATIC_JAVA_LIBRARIES := \
+        android-opt-cards
+
+LOCAL_JAVA_LIBRARIES := \
+        android.test.runner \
+        android-support-v7-recyclerview
+
+LOCAL_PACKAGE_NAME := android-opt-cards-tests
+
+LOCAL_SDK_VERSION := 21
+
+LOCAL_SRC_FILES := $(call all-java-files-under, src)
+
+LOCAL_RESOURCE_DIR := $(LOCAL_PATH)/../res
+LOCAL_AAPT_FLAGS := --auto-add-overlay --extra-packages com.android.cards
+
+include $(BUILD_PACKAGE)
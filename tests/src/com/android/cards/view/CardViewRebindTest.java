@@ -0,0 +1,131 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package com.android.cards.view;
+
+import android.test.AndroidTestCase;
+import android.view.View;
+
+import com.android.cards.internal.Card;
+import com.android.cards.internal.CardExpand;
+import com.android.cards.internal.ViewToClickToExpand;
+
+import java.lang.reflect.Field;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Checks that a CardView bound again to new cards keeps its listeners
+ * instead of allocating new ones on every bind.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardViewRebindTest extends AndroidTestCase {
+
+    private static final int BINDS = 10;
+
+    public void testListenersAreReusedWhenBoundAgain() throws Exception {
+        final CardView cardView = new CardView(getContext());
+        cardView.setCard(newCard("0"));
+
+        final Map<Object, Boolean> expandListeners = new IdentityHashMap<Object, Boolean>();
+        final Map<Object, Boolean> expandHelpers = new IdentityHashMap<Object, Boolean>();
+        final Map<Object, Boolean> swipeListeners = new IdentityHashMap<Object, Boolean>();
+        collect(cardView, expandListeners, expandHelpers, swipeListeners);
+
+        //A list adapter binds the recycled view to the next card
+        for (int i = 1; i <= BINDS; i++) {
+            cardView.setRecycle(true);
+            cardView.setCard(newCard(String.valueOf(i)));
+            collect(cardView, expandListeners, expandHelpers, swipeListeners);
+        }
+
+        assertEquals(1, expandListeners.size());
+        assertEquals(1, expandHelpers.size());
+        assertEquals(getSwipeListeners(cardView).size(), swipeListeners.size());
+    }
+
+    public void testListenersArePointedAtTheCurrentCard() throws Exception {
+        final CardView cardView = new CardView(getContext());
+        cardView.setCard(newCard("0"));
+
+        final Card card = newCard("1");
+        cardView.setRecycle(true);
+        cardView.setCard(card);
+
+        final Object expandListener = getField(cardView, "mExpandClickListener");
+        assertSame(card, getField(getField(expandListener, "mExpandContainerHelper"), "card"));
+    }
+
+    public void testSwipeListenersAreDroppedWithTheViews() throws Exception {
+        final CardView cardView = new CardView(getContext());
+        cardView.setCard(newCard("0"));
+        assertFalse(getSwipeListeners(cardView).isEmpty());
+
+        cardView.retrieveLayoutIDs();
+        assertTrue(getSwipeListeners(cardView).isEmpty());
+    }
+
+    // -------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------
+
+    private Card newCard(String id) {
+        final Card card = new Card(getContext());
+        card.setId(id);
+        card.setSwipeable(true);
+        card.setOnClickListener(new Card.OnCardClickListener() {
+            @Override
+            public void onClick(Card card, View view) {
+            }
+        });
+        card.addCardExpand(new CardExpand(getContext()));
+        card.setViewToClickToExpand(ViewToClickToExpand.builder()
+                .setupCardElement(ViewToClickToExpand.CardElementUI.CARD));
+        return card;
+    }
+
+    private static void collect(CardView cardView, Map<Object, Boolean> expandListeners,
+                                Map<Object, Boolean> expandHelpers,
+                                Map<Object, Boolean> swipeListeners) throws Exception {
+        final Object expandListener = getField(cardView, "mExpandClickListener");
+        assertNotNull(expandListener);
+        expandListeners.put(expandListener, Boolean.TRUE);
+        expandHelpers.put(getField(expandListener, "mExpandContainerHelper"), Boolean.TRUE);
+        for (Object listener : getSwipeListeners(cardView).values())
+            swipeListeners.put(listener, Boolean.TRUE);
+    }
+
+    private static Map<?, ?> getSwipeListeners(CardView cardView) throws Exception {
+        return (Map<?, ?>) getField(cardView, "mSwipeListeners");
+    }
+
+    private static Object getField(Object object, String name) throws Exception {
+        Class<?> clazz = object.getClass();
+        while (clazz != null) {
+            try {
+                final Field field = clazz.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(object);
+            } catch (NoSuchFieldException e) {
+                clazz = clazz.getSuperclass();
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}